@@ -41,6 +41,10 @@ public final class ClassNames {
     public static final ClassName GERROR_EXCEPTION = get(PKG_BASE, "GErrorException");
     public static final ClassName GLIB_LOGGER = get(PKG_BASE, "GLibLogger");
     public static final ClassName OUT = get(PKG_BASE, "Out");
+    public static final ClassName OUT_BOOLEAN = get(PKG_BASE, "OutBoolean");
+    public static final ClassName OUT_DOUBLE = get(PKG_BASE, "OutDouble");
+    public static final ClassName OUT_INT = get(PKG_BASE, "OutInt");
+    public static final ClassName OUT_LONG = get(PKG_BASE, "OutLong");
     public static final ClassName PROXY = get(PKG_BASE, "Proxy");
     public static final ClassName PROXY_INSTANCE = get(PKG_BASE, "ProxyInstance");
     public static final ClassName UNSUPPORTED_PLATFORM_EXCEPTION = get(PKG_BASE, "UnsupportedPlatformException");
@@ -51,6 +55,7 @@ public final class ClassNames {
     public static final ClassName INTEROP = get(PKG_INTEROP, "Interop");
     public static final ClassName PLATFORM = get(PKG_INTEROP, "Platform");
 
+    public static final ClassName ASYNC_FUTURE = get(PKG_GIO, "AsyncFuture");
     public static final ClassName AUTO_CLOSEABLE = get(PKG_GIO, "AutoCloseable");
     public static final ClassName LIST_MODEL_JAVA_LIST = get(PKG_GIO, "ListModelJavaList");
 
@@ -39,9 +39,66 @@ import static java.util.stream.Collectors.joining;
 public class CallableGenerator {
 
     private final Callable callable;
+    private final boolean primitiveOut;
+    private final boolean intFlags;
+    private final boolean future;
 
     public CallableGenerator(Callable callable) {
+        this(callable, false, false, false);
+    }
+
+    /*
+     * When primitiveOut is true, int, long, double and gboolean
+     * out-parameters are generated as primitive out-parameter holders
+     * (OutInt, OutLong, OutDouble and OutBoolean) instead of Out<> objects.
+     * When intFlags is true, flags parameters are generated as plain int
+     * bitmasks instead of Sets.
+     * When future is true, the GAsyncReadyCallback and GCancellable
+     * parameters are not generated, and are marshaled from the AsyncFuture
+     * in the "_future" variable.
+     */
+    CallableGenerator(Callable callable, boolean primitiveOut,
+                      boolean intFlags, boolean future) {
         this.callable = callable;
+        this.primitiveOut = primitiveOut;
+        this.intFlags = intFlags;
+        this.future = future;
+    }
+
+    // Check if this is the callback parameter of an async function
+    static boolean isAsyncReadyCallback(Parameter p) {
+        return p.anyType() instanceof Type type
+                && "GAsyncReadyCallback".equals(type.cType());
+    }
+
+    // Check if this is the GCancellable parameter of a (GIO) function
+    static boolean isCancellable(Parameter p) {
+        return p.anyType() instanceof Type type
+                && "GCancellable*".equals(type.cType());
+    }
+
+    /*
+     * Check if the value is a flags value that is passed by value, and can
+     * be marshaled as a plain int bitmask. Out-parameters and aliases are
+     * excluded.
+     */
+    static boolean isIntFlags(TypedValue v) {
+        if (v instanceof Parameter p && (p.isOutParameter() || p.varargs()))
+            return false;
+        return v.anyType() instanceof Type type
+                && (!type.isPointer())
+                && type.get() instanceof Bitfield;
+    }
+
+    static TypeName getPrimitiveOutType(Parameter p) {
+        var type = (Type) p.anyType();
+        if (type.isBoolean())
+            return ClassNames.OUT_BOOLEAN;
+        return switch (type.javaType()) {
+            case "int" -> ClassNames.OUT_INT;
+            case "long" -> ClassNames.OUT_LONG;
+            default -> ClassNames.OUT_DOUBLE;
+        };
     }
 
     CodeBlock generateFunctionDescriptorDeclaration() {
@@ -108,12 +165,19 @@ public class CallableGenerator {
                     || p.isArrayLengthParameter())
                 continue;
 
+            if (future && (isAsyncReadyCallback(p) || isCancellable(p)))
+                continue;
+
             if (p.varargs()) {
                 builder.addParameter(Object[].class, "varargs");
                 builder.varargs(true);
             } else {
                 var generator = new TypedValueGenerator(p);
-                var type = generator.getType(setOfBitfield);
+                boolean intFlag = intFlags && isIntFlags(p);
+                var type = primitiveOut && p.isPrimitiveOutParameter()
+                        ? getPrimitiveOutType(p)
+                        : intFlag ? TypeName.INT
+                        : generator.getType(setOfBitfield);
 
                 // Trailing flags parameter can be variadic
                 if ((!setOfBitfield)
@@ -128,7 +192,9 @@ public class CallableGenerator {
                     type = ClassNames.GENERIC_T;
 
                 var spec = ParameterSpec.builder(type, generator.getName());
-                if (p.nullable())
+                if (intFlag)
+                    ; // a primitive int is never null
+                else if (p.nullable())
                     spec.addAnnotation(Nullable.class);
                 else if (p.notNull())
                     spec.addAnnotation(NotNull.class);
@@ -152,6 +218,8 @@ public class CallableGenerator {
         if (iParam != null) {
             if (iParam.type().get() instanceof FlaggedType)
                 stmt.add("getValue()"); // method in Enumeration class
+            else if (iParam.isHeapAllocatableRecord())
+                stmt.add("_thisNative"); // native copy of a heap struct
             else
                 stmt.add("handle()");   // method in regular TypeInstance class
         }
@@ -163,6 +231,22 @@ public class CallableGenerator {
             var generator = new TypedValueGenerator(p);
             var name = generator.getName();
 
+            // Callback, user_data and cancellable of a CompletableFuture variant
+            if (future && isAsyncReadyCallback(p)) {
+                stmt.add("$asyncFuture:T.READY_CALLBACK",
+                        "asyncFuture", ClassNames.ASYNC_FUTURE);
+                continue;
+            }
+            if (future && p.isUserDataParameter()
+                    && isAsyncReadyCallback(p.getRelatedCallbackParameter())) {
+                stmt.add("_future.userData()");
+                continue;
+            }
+            if (future && isCancellable(p)) {
+                stmt.add("_future.cancellable().handle()");
+                continue;
+            }
+
             // Generate null-check. But don't null-check parameters that are
             // hidden from the Java API, or primitive values
             if (generator.checkNull())
@@ -201,6 +285,16 @@ public class CallableGenerator {
             else if (p.varargs())
                 stmt.add("varargs");
 
+            // Primitive out-parameter holder
+            else if (primitiveOut && p.isPrimitiveOutParameter())
+                stmt.add(p.nullable()
+                        ? "(" + name + " == null ? $memorySegment:T.NULL : " + name + ".handle())"
+                        : name + ".handle()");
+
+            // Flags passed as an int bitmask
+            else if (intFlags && isIntFlags(p))
+                stmt.add(name);
+
             // Preprocessing statement
             else if (p.isOutParameter()
                     || (p.anyType() instanceof Type type
@@ -210,6 +304,10 @@ public class CallableGenerator {
                 stmt.add("_" + name + "Pointer");
             }
 
+            // Native copy of a heap-allocated struct
+            else if (p.isHeapAllocatableRecord())
+                stmt.add("_" + name + "Native");
+
             // Custom interop
             else
                 stmt.add(generator.marshalJavaToNative(name));
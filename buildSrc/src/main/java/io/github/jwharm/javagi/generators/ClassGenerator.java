@@ -91,10 +91,11 @@ public class ClassGenerator extends RegisteredTypeGenerator {
         else if (cls.isInstanceOf("GObject", "ParamSpec"))
             builder.addMethod(paramSpecGetTypeMethod());
 
-        MethodSpec memoryLayout = new MemoryLayoutGenerator()
-                .generateMemoryLayout(cls);
+        var layoutGenerator = new MemoryLayoutGenerator();
+        MethodSpec memoryLayout = layoutGenerator.generateMemoryLayout(cls);
         if (memoryLayout != null)
-            builder.addMethod(memoryLayout);
+            builder.addField(layoutGenerator.generateMemoryLayoutField(cls))
+                   .addMethod(memoryLayout);
 
         builder.addMethod(parentAccessor());
         builder.addMethod(memoryAddressConstructor());
@@ -176,9 +176,12 @@ public class ConstructorGenerator {
                             stmt.arguments())
                     .beginControlFlow("if (_object instanceof $T _gobject)",
                             ClassNames.GOBJECT)
+                    .beginControlFlow("if ($T.isDebugEnabled())",
+                            ClassNames.GLIB_LOGGER)
                     .addStatement("$T.debug($S, _gobject.handle().address())",
                             ClassNames.GLIB_LOGGER,
                             "Ref " + returnType + " %ld")
+                    .endControlFlow()
                     .addStatement("_gobject.ref()")
                     .endControlFlow()
                     .addStatement("return ($T) _object", returnType);
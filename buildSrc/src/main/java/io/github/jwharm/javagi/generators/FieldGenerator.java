@@ -19,11 +19,13 @@
 
 package io.github.jwharm.javagi.generators;
 
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
 import io.github.jwharm.javagi.configuration.ClassNames;
 import io.github.jwharm.javagi.gir.*;
 import io.github.jwharm.javagi.gir.Class;
+import io.github.jwharm.javagi.gir.Record;
 import io.github.jwharm.javagi.util.PartialStatement;
 
 import javax.lang.model.element.Modifier;
@@ -34,6 +36,8 @@ import java.lang.foreign.MemoryLayout;
 import java.lang.foreign.MemorySegment;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Map;
 
 import static io.github.jwharm.javagi.util.Conversions.*;
 
@@ -64,6 +68,61 @@ public class FieldGenerator extends TypedValueGenerator {
         return methodName;
     }
 
+    /*
+     * Fields with a value layout (primitive values and pointers) that are
+     * declared directly in the struct, are accessed with a static VarHandle.
+     * Other fields (nested structs, fixed-size arrays, fields in a nested
+     * union) are accessed by path from the memory layout.
+     */
+    private boolean hasStaticVarHandle() {
+        if (!(f.parent() instanceof Record) || f.name() == null)
+            return false;
+
+        return switch (f.anyType()) {
+            case null -> true; // callback
+            case Array array -> array.fixedSize() <= 0;
+            case Type t -> t.isPointer() || !isEmbeddedStruct(t);
+        };
+    }
+
+    private static boolean isEmbeddedStruct(Type type) {
+        RegisteredType target = type.get();
+        if (target instanceof Alias alias)
+            return isEmbeddedStruct(alias.type());
+        return !type.isPointer() && target instanceof FieldContainer;
+    }
+
+    private String varHandleName() {
+        return "_" + getName() + "VarHandle";
+    }
+
+    /*
+     * The VarHandle for a field whose carrier type is the same on all
+     * platforms, is adapted with invoke-exact behavior. The carrier type of
+     * `long` fields depends on the platform.
+     */
+    public FieldSpec generateVarHandleField() {
+        if (!hasStaticVarHandle())
+            return null;
+
+        boolean isLong = type != null && type.isLong();
+        return FieldSpec.builder(VarHandle.class, varHandleName(),
+                        Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$L.varHandle($T.PathElement.groupElement($S))"
+                                + (isLong ? "" : "$Z.withInvokeExactBehavior()"),
+                        MemoryLayoutGenerator.LAYOUT_FIELD,
+                        MemoryLayout.class,
+                        f.name())
+                .build();
+    }
+
+    // Expression that returns the VarHandle for this field
+    private String varHandle() {
+        return hasStaticVarHandle()
+                ? varHandleName()
+                : "getMemoryLayout().varHandle($memoryLayout:T.PathElement.groupElement($fieldName:S))";
+    }
+
     public MethodSpec generateReadMethod() {
         // To read from ...** fields, you must provide the length of the array.
         boolean isArray = type != null && type.isActuallyAnArray();
@@ -101,11 +160,16 @@ public class FieldGenerator extends TypedValueGenerator {
 
         // Read a pointer or primitive value from the struct
         var carrierType = getCarrierTypeName(f.anyType(), true);
-        var getResult = "var _result = ($T) getMemoryLayout()$Z.varHandle($T.PathElement.groupElement($S)).get(handle(), 0)";
+        var getResult = PartialStatement.of("var _result = ($carrierType:T) ",
+                        "carrierType", carrierType,
+                        "memoryLayout", MemoryLayout.class,
+                        "fieldName", f.name())
+                .add(varHandle())
+                .add("$Z.get(handle(), 0L);\n");
         var returnResult = PartialStatement.of("return ")
                 .add(marshalNativeToJava("_result", false))
                 .add(";\n");
-        return spec.addStatement(getResult, carrierType, MemoryLayout.class, f.name())
+        return spec.addNamedCode(getResult.format(), getResult.arguments())
                 .addNamedCode(returnResult.format(), returnResult.arguments())
                 .build();
     }
@@ -136,13 +200,13 @@ public class FieldGenerator extends TypedValueGenerator {
                         "fieldName", f.name());
 
         if (checkNull())
-            spec.addNamedCode("getMemoryLayout().varHandle($memoryLayout:T.PathElement.groupElement($fieldName:S))$Z"
-                            + ".set(handle(), 0, (" + getName() + " == null ? $memorySegment:T.NULL : "
+            spec.addNamedCode(varHandle() + "$Z"
+                            + ".set(handle(), 0L, (" + getName() + " == null ? $memorySegment:T.NULL : "
                             + stmt.format() + "));\n",
                     stmt.arguments());
         else
-            spec.addNamedCode("getMemoryLayout().varHandle($memoryLayout:T.PathElement.groupElement($fieldName:S))$Z"
-                            + ".set(handle(), 0, "
+            spec.addNamedCode(varHandle() + "$Z"
+                            + ".set(handle(), 0L, "
                             + stmt.format() + ");\n",
                     stmt.arguments());
 
@@ -216,11 +280,11 @@ public class FieldGenerator extends TypedValueGenerator {
                         getName() + "Upcall")
                 .addStatement("$T _address = $T.nativeLinker().upcallStub(_handle.bindTo(this), _fdesc, arena)",
                         MemorySegment.class, Linker.class)
-                .addStatement("getMemoryLayout().varHandle($T.PathElement.groupElement($S))$Z"
-                                + ".set(handle(), 0, (method == null ? $T.NULL : _address))",
-                        MemoryLayout.class,
-                        f.name(),
-                        MemorySegment.class)
+                .addNamedCode(varHandle() + "$Z"
+                                + ".set(handle(), 0L, (method == null ? $memorySegment:T.NULL : _address));\n",
+                        Map.of("memoryLayout", MemoryLayout.class,
+                                "memorySegment", MemorySegment.class,
+                                "fieldName", f.name()))
                 .build();
     }
 }
@@ -19,6 +19,7 @@
 
 package io.github.jwharm.javagi.generators;
 
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import io.github.jwharm.javagi.configuration.ClassNames;
 import io.github.jwharm.javagi.gir.Class;
@@ -47,39 +48,49 @@ public class MemoryLayoutGenerator {
         return !isOpaque;
     }
 
-    MethodSpec generateMemoryLayout(FieldContainer fc) {
+    /*
+     * The memory layout is created once, in a static field, so it is not
+     * rebuilt every time getMemoryLayout() is called.
+     */
+    static final String LAYOUT_FIELD = "MEMORY_LAYOUT";
+
+    FieldSpec generateMemoryLayoutField(FieldContainer fc) {
         if (!canGenerate(fc))
             return null;
 
         boolean hasLongFields = fc.deepMatch(
                 n -> n instanceof Type t && t.isLong(), Callback.class);
 
-        var method = MethodSpec.methodBuilder("getMemoryLayout")
-                .addJavadoc("The memory layout of the native struct.\n")
-                .addJavadoc("@return the memory layout\n")
-                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                .returns(MemoryLayout.class);
-
         // When there are `long` fields, generate 32-bit and 64-bit layout
+        PartialStatement layout;
         if (hasLongFields) {
-            method.beginControlFlow("if ($T.longAsInt())", ClassNames.INTEROP);
-            var layout = generateGroupLayout(fc, true);
-            addReturn(method, layout);
-            method.nextControlFlow("else");
-            layout = generateGroupLayout(fc, false);
-            addReturn(method, layout);
-            method.endControlFlow();
+            layout = PartialStatement.of("$interop:T.longAsInt()\n$>? ",
+                            "interop", ClassNames.INTEROP)
+                    .add(generateGroupLayout(fc, true))
+                    .add("\n: ")
+                    .add(generateGroupLayout(fc, false))
+                    .add("$<");
         } else {
-            var layout = generateGroupLayout(fc, false);
-            addReturn(method, layout);
+            layout = generateGroupLayout(fc, false);
         }
 
-        return method.build();
+        return FieldSpec.builder(MemoryLayout.class, LAYOUT_FIELD,
+                        Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer(layout.toCodeBlock())
+                .build();
     }
 
-    private void addReturn(MethodSpec.Builder method, PartialStatement layout) {
-        String code = "return " + layout.format() + ";\n";
-        method.addNamedCode(code, layout.arguments());
+    MethodSpec generateMemoryLayout(FieldContainer fc) {
+        if (!canGenerate(fc))
+            return null;
+
+        return MethodSpec.methodBuilder("getMemoryLayout")
+                .addJavadoc("The memory layout of the native struct.\n")
+                .addJavadoc("@return the memory layout\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(MemoryLayout.class)
+                .addStatement("return $L", LAYOUT_FIELD)
+                .build();
     }
 
     private PartialStatement generateGroupLayout(FieldContainer fc,
@@ -34,6 +34,7 @@ import java.lang.foreign.MemorySegment;
 import java.lang.foreign.ValueLayout;
 import java.lang.invoke.MethodHandle;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 
 import static io.github.jwharm.javagi.util.Conversions.*;
@@ -41,12 +42,19 @@ import static java.util.Comparator.comparing;
 
 public class MethodGenerator {
 
+    // Name of the Arena parameter of "borrowed" method variants
+    private static final String BORROWED_SCOPE = "scope";
+
     private final Callable func;
     private final VirtualMethod vm;
     private final ReturnValue returnValue;
     private final boolean generic;
     private final MethodSpec.Builder builder;
     private final CallableGenerator generator;
+    private final boolean borrowed;
+    private final boolean primitiveOut;
+    private final boolean intFlags;
+    private final boolean future;
 
     public MethodGenerator(Callable func) {
         this(func, getName(func));
@@ -65,10 +73,20 @@ public class MethodGenerator {
     }
 
     public MethodGenerator(Callable func, String name) {
+        this(func, name, false, false, false, false);
+    }
+
+    private MethodGenerator(Callable func, String name, boolean borrowed,
+                            boolean primitiveOut, boolean intFlags,
+                            boolean future) {
         this.func = func;
         this.builder = MethodSpec.methodBuilder(name);
-        this.generator = new CallableGenerator(func);
+        this.generator = new CallableGenerator(func, primitiveOut, intFlags, future);
         this.generic = isGeneric(func);
+        this.borrowed = borrowed;
+        this.primitiveOut = primitiveOut;
+        this.intFlags = intFlags;
+        this.future = future;
 
         if (func instanceof Method method) {
             vm = method.invokerFor();
@@ -102,9 +120,275 @@ public class MethodGenerator {
                 .build();
     }
 
+    /**
+     * Check if a "borrowed" variant of this method can be generated. This is
+     * the case for methods and functions that return a struct, boxed type or
+     * union without ownership transfer, that would otherwise be copied.
+     */
+    public boolean hasBorrowedVariant() {
+        if (!(func instanceof Method || func instanceof Function)
+                || returnValue.transferOwnership() != TransferOwnership.NONE
+                || generator.varargs()
+                || hasParameter(BORROWED_SCOPE)
+                || hasHeapAllocatableRecordParameter())
+            return false;
+
+        RegisteredType target = returnValue.anyType() instanceof Type type
+                ? type.get() : null;
+        if (!(((target instanceof Record record
+                        && !record.foreign()
+                        && !record.checkIsGList())
+                    || target instanceof Boxed
+                    || target instanceof Union)
+                && (!List.of("org.gnome.gobject.TypeInstance",
+                             "org.gnome.gobject.TypeClass",
+                             "org.gnome.gobject.TypeInterface")
+                        .contains(target.javaType()))))
+            return false;
+
+        // Return values of GLib functions, and structs without copy function
+        // and unknown size, are not copied
+        var slt = (StandardLayoutType) target;
+        var copyFunc = slt.copyFunction();
+        var hasMemoryLayout = slt instanceof FieldContainer fc
+                && new MemoryLayoutGenerator().canGenerate(fc);
+        if (List.of("GLib", "GModule").contains(target.namespace().name())
+                || (!hasMemoryLayout && copyFunc == null))
+            return false;
+
+        // The result of ref() or copy() is not copied
+        if ("ref".equals(func.name()) || "copy".equals(func.name())
+                || (copyFunc != null && copyFunc.name().equals(func.name())))
+            return false;
+
+        // Don't generate the variant when another method has the same name
+        return isUnusedName(getName(func) + "Borrowed");
+    }
+
+    /*
+     * A heap-allocated record is copied into a temporary native copy for
+     * the duration of the call. A returned pointer into that copy (like the
+     * result of graphene_*_init) would be dangling after the call.
+     */
+    private boolean hasHeapAllocatableRecordParameter() {
+        if (func.parameters() == null)
+            return false;
+        var iParam = func.parameters().instanceParameter();
+        return (iParam != null && iParam.isHeapAllocatableRecord())
+                || func.parameters().parameters().stream()
+                        .anyMatch(Parameter::isHeapAllocatableRecord);
+    }
+
+    /**
+     * Generate a variant of this method that returns the struct without
+     * copying it, and without registering it with the memory cleaner. The
+     * returned instance is a view on the native memory that is only valid in
+     * the scope of a caller-supplied Arena.
+     */
+    public MethodSpec generateBorrowed() {
+        return new MethodGenerator(func, getName(func) + "Borrowed", true, false, false, false)
+                .generate();
+    }
+
+    /**
+     * Check if an overload with primitive out-parameter holders can be
+     * generated for this method.
+     */
+    public boolean hasPrimitiveOutVariant() {
+        if (!((func instanceof Method || func instanceof Function)
+                && vm == null
+                && func.parameters() != null
+                && func.parameters().parameters().stream()
+                        .anyMatch(Parameter::isPrimitiveOutParameter)))
+            return false;
+
+        // A variant with a different name must not clash with other methods
+        String name = primitiveOutName();
+        return name.equals(getName(func)) || isUnusedName(name);
+    }
+
+    /**
+     * Generate an overload of this method, where int, long, double and
+     * gboolean out-parameters are passed in primitive out-parameter holders
+     * instead of {@code Out<>} objects. The native memory of the holder is
+     * passed to the native function directly, so the values are not boxed,
+     * and no memory is allocated for them.
+     */
+    public MethodSpec generatePrimitiveOut() {
+        return new MethodGenerator(func, primitiveOutName(), false, true, false, false)
+                .generate();
+    }
+
+    /*
+     * When all primitive out-parameters are nullable, a call that passes
+     * null for all of them would be ambiguous between the Out<> method and
+     * an overload, so the variant is named {@code <name>Primitive}.
+     */
+    private String primitiveOutName() {
+        boolean allNullable = func.parameters().parameters().stream()
+                .filter(Parameter::isPrimitiveOutParameter)
+                .allMatch(Parameter::nullable);
+        return allNullable ? getName(func) + "Primitive" : getName(func);
+    }
+
+    // Check that no other method or function has the provided name
+    private boolean isUnusedName(String name) {
+        return func.parent().children().stream()
+                .filter(c -> c != func
+                        && (c instanceof Method || c instanceof Function))
+                .noneMatch(c -> name.equals(getName((Callable) c)));
+    }
+
+    /**
+     * Check if a variant of this method can be generated where flags
+     * parameters and the flags return value are plain int bitmasks.
+     */
+    public boolean hasIntFlagsVariant() {
+        return (func instanceof Method || func instanceof Function)
+                && vm == null
+                && (CallableGenerator.isIntFlags(returnValue)
+                    || (func.parameters() != null
+                        && func.parameters().parameters().stream()
+                                .anyMatch(CallableGenerator::isIntFlags)));
+    }
+
+    /**
+     * Generate a variant of this method where flags parameters and the flags
+     * return value are plain int bitmasks instead of Sets, so no EnumSet is
+     * created or iterated. When the method returns flags, the variant is
+     * named {@code <name>AsInt}; otherwise it is an overload.
+     */
+    public MethodSpec generateIntFlags() {
+        String name = CallableGenerator.isIntFlags(returnValue)
+                ? getName(func) + "AsInt"
+                : getName(func);
+        return new MethodGenerator(func, name, false, false, true, false)
+                .generate();
+    }
+
+    /**
+     * Check if a variant of this method can be generated that returns a
+     * {@code CompletableFuture}. This is the case for async functions with
+     * a GAsyncReadyCallback, that have a finish function with only a
+     * GAsyncResult parameter.
+     */
+    public boolean hasFutureVariant() {
+        if (!(func instanceof Method || func instanceof Function)
+                || func.throws_()
+                || (!returnValue.anyType().isVoid())
+                || generator.varargs()
+                || func.parameters() == null
+                || func.parameters().parameters().stream()
+                        .filter(CallableGenerator::isAsyncReadyCallback)
+                        .count() != 1
+                || finishFunc() == null)
+            return false;
+
+        // Don't generate an overload when other methods have the same name
+        return isUnusedName(getName(func));
+    }
+
+    /**
+     * Generate an overload of this async method without the cancellable and
+     * callback parameters, that returns a {@code CompletableFuture} that is
+     * completed with the result of the finish function. Cancelling the
+     * future cancels the operation.
+     */
+    public MethodSpec generateFuture() {
+        return new MethodGenerator(func, getName(func), false, false, false, true)
+                .generate();
+    }
+
+    // Find the finish function of an async function
+    private Callable finishFunc() {
+        String finishName = func.callableAttrs().finishFunc();
+        if (finishName == null)
+            return null;
+
+        return func.parent().children().stream()
+                .filter(c -> c.getClass() == func.getClass())
+                .map(Callable.class::cast)
+                .filter(c -> finishName.equals(c.callableAttrs().name()))
+                .filter(c -> !c.skip())
+                .filter(c -> c.parameters() != null
+                        && c.parameters().parameters().size() == 1
+                        && c.parameters().parameters().getFirst().anyType()
+                                instanceof Type t
+                        && "GAsyncResult*".equals(t.cType()))
+                .findAny()
+                .orElse(null);
+    }
+
+    // The boxed Java type of the result of the finish function
+    private TypeName finishType(Callable finish) {
+        var rv = finish.returnValue();
+        if (rv.anyType().isVoid())
+            return ClassName.get(Void.class);
+        if (isGeneric(finish) && rv.anyType().typeName().equals(ClassNames.GOBJECT))
+            return ClassNames.GENERIC_T;
+        return new TypedValueGenerator(rv).getType().box();
+    }
+
+    // Primitive out-parameter holders don't need pre- and postprocessing,
+    // and the callback and cancellable of a future variant are not used
+    private boolean isProcessed(Parameter p) {
+        if (future && (CallableGenerator.isAsyncReadyCallback(p)
+                || CallableGenerator.isCancellable(p)))
+            return false;
+        return !(primitiveOut && p.isPrimitiveOutParameter());
+    }
+
+    // Check if an arena must be allocated for the function call
+    private boolean allocatesMemory() {
+        if (!(primitiveOut || future))
+            return func.allocatesMemory();
+
+        var params = func.parameters();
+        return func.callableAttrs().throws_()
+                || returnValue.allocatesMemory()
+                || params.parameters().stream()
+                        .filter(this::isProcessed)
+                        .anyMatch(Parameter::allocatesMemory);
+    }
+
+    private boolean hasParameter(String name) {
+        return func.parameters() != null
+                && func.parameters().parameters().stream()
+                        .anyMatch(p -> name.equals(toJavaIdentifier(p.name())));
+    }
+
     public MethodSpec generate() {
+        // Borrowed variant
+        if (borrowed)
+            builder.addJavadoc("""
+                    Variant of {@link #$L} that returns a view on the native
+                    struct. The struct is not copied, and the returned
+                    instance is not registered with the memory cleaner. The
+                    view can only be accessed until {@code $L} is closed, and
+                    only as long as the owner of the struct does not free it.
+                    <p>
+                    """, getName(func), BORROWED_SCOPE);
+
+        // Future variant
+        Callable finish = future ? finishFunc() : null;
+        if (future)
+            builder.addJavadoc("""
+                    Variant of {@link #$L} that returns a
+                    {@link $T} that is completed with the result of
+                    {@link #$L}. Cancelling the future cancels the operation.
+                    """, getName(func), CompletableFuture.class, getName(finish));
+
+        // Flags variant
+        if (intFlags)
+            builder.addJavadoc("""
+                    Variant of {@link #$L} that takes and returns flags as an
+                    int bitmask.
+                    <p>
+                    """, getName(func));
+
         // Javadoc
         if ((! (func instanceof Constructor)) // not for private constructor helper methods
+                && (! future) // the documented parameters don't match
                 && (func.infoElements().doc() != null)) {
             String javadoc = new DocGenerator(func.infoElements().doc()).generate();
             if (func instanceof Multiplatform mp && mp.doPlatformCheck())
@@ -140,11 +424,20 @@ public class MethodGenerator {
             builder.returns(ClassNames.GENERIC_T);
         else if (func instanceof Constructor)
             builder.returns(MemorySegment.class);
+        else if (intFlags && CallableGenerator.isIntFlags(returnValue))
+            builder.returns(int.class);
+        else if (future)
+            builder.returns(ParameterizedTypeName.get(
+                    ClassName.get(CompletableFuture.class), finishType(finish)));
         else
             builder.returns(new TypedValueGenerator(returnValue).getType());
 
         // Parameters
         generator.generateMethodParameters(builder, generic, true);
+        if (borrowed)
+            builder.addJavadoc("@param $L the scope in which the returned view is valid\n",
+                            BORROWED_SCOPE)
+                    .addParameter(Arena.class, BORROWED_SCOPE);
 
         // Exception
         if (func.callableAttrs().throws_())
@@ -157,7 +450,7 @@ public class MethodGenerator {
                     Platform.toStringLiterals(func.platforms()));
 
         // try-block for arena
-        if (func.allocatesMemory())
+        if (allocatesMemory())
             builder.beginControlFlow("try (var _arena = $T.ofConfined())",
                     Arena.class);
 
@@ -167,9 +460,18 @@ public class MethodGenerator {
                     // Array parameters may refer to other parameters for their
                     // length, so they must be processed last.
                     .sorted((comparing(p -> p.anyType() instanceof Array)))
+                    .filter(this::isProcessed)
                     .map(PreprocessingGenerator::new)
                     .forEach(p -> p.generate(builder));
 
+        // Copy a heap-allocated instance into native memory
+        var iParam = func.parameters() == null ? null
+                : func.parameters().instanceParameter();
+        if (iParam != null && iParam.isHeapAllocatableRecord())
+            builder.addStatement("$T _thisNative = $T.toNative(this)",
+                    MemorySegment.class,
+                    ClassNames.INTEROP);
+
         // Allocate GError
         if (func.callableAttrs().throws_())
             builder.addStatement("$T _gerror = _arena.allocate($T.ADDRESS)",
@@ -181,6 +483,19 @@ public class MethodGenerator {
             builder.addStatement("$T _result",
                     Conversions.getCarrierTypeName(returnValue.anyType(), true));
 
+        // Create the future, that calls the finish function when the operation
+        // is ready. The future is registered as pending when it is created, so
+        // this is done right before the native call: when preprocessing throws
+        // an exception, no future is left behind.
+        if (future) {
+            if (finish.returnValue().anyType().isVoid())
+                builder.addStatement("var _future = new $T<$T>(_res -> {$W$L(_res);$Wreturn null;$W})",
+                        ClassNames.ASYNC_FUTURE, finishType(finish), getName(finish));
+            else
+                builder.addStatement("var _future = new $T<$T>(_res ->$W$L(_res))",
+                        ClassNames.ASYNC_FUTURE, finishType(finish), getName(finish));
+        }
+
         // Try-catch for function invocation
         builder.beginControlFlow("try");
 
@@ -219,9 +534,16 @@ public class MethodGenerator {
             func.parameters().parameters().stream()
                     // Process Array parameters last
                     .sorted((comparing(p -> p.anyType() instanceof Array)))
+                    .filter(this::isProcessed)
                     .map(PostprocessingGenerator::new)
                     .forEach(p -> p.generate(builder));
 
+        // Copy the native copy back into a heap-allocated instance
+        if (iParam != null && iParam.isHeapAllocatableRecord()
+                && (!iParam.type().cType().startsWith("const ")))
+            builder.addStatement("$T.copyBack(_thisNative, this)",
+                    ClassNames.INTEROP);
+
         // Private static helper method for constructors return the result as-is
         if (func instanceof Constructor) {
             builder.addStatement("return _result");
@@ -232,14 +554,25 @@ public class MethodGenerator {
             generateOwnershipTransfer();
         }
 
+        // Future variant: Return the pending future
+        else if (future) {
+            builder.addStatement("return _future");
+        }
+
         // End try-block for arena
-        if (func.allocatesMemory())
+        if (allocatesMemory())
             builder.endControlFlow();
 
         return builder.build();
     }
 
     private void generateOwnershipTransfer() {
+        // Flags variant: Return the bitmask as-is
+        if (intFlags && CallableGenerator.isIntFlags(returnValue)) {
+            builder.addStatement("return _result");
+            return;
+        }
+
         // Prepare a statement that marshals the return value to Java
         RegisteredType target = returnValue.anyType() instanceof Type type
                 ? type.get() : null;
@@ -249,6 +582,19 @@ public class MethodGenerator {
             stmt.add("($generic:T) ", "generic", ClassNames.GENERIC_T);
         stmt.add(generator.marshalNativeToJava("_result", false));
 
+        // Borrowed variant: Return a view that is scoped to the arena
+        if (borrowed) {
+            builder.beginControlFlow("if (_result == null || _result.equals($T.NULL))",
+                            MemorySegment.class)
+                    .addStatement("return null")
+                    .endControlFlow()
+                    .addStatement("_result = _result.reinterpret($L, null)",
+                            BORROWED_SCOPE)
+                    .addNamedCode(PartialStatement.of("return ")
+                            .add(stmt).format() + ";\n", stmt.arguments());
+            return;
+        }
+
         // Ref GObject when ownership is not transferred
         if (target != null && target.checkIsGObject()
                 && returnValue.transferOwnership() == TransferOwnership.NONE
@@ -259,9 +605,12 @@ public class MethodGenerator {
                     .add(stmt).format() + ";\n", stmt.arguments())
                     .beginControlFlow("if (_object instanceof $T _gobject)",
                             ClassNames.GOBJECT)
+                    .beginControlFlow("if ($T.isDebugEnabled())",
+                            ClassNames.GLIB_LOGGER)
                     .addStatement("$T.debug($S, _gobject.handle().address())",
                             ClassNames.GLIB_LOGGER,
                             "Ref " + generator.getType() + " %ld")
+                    .endControlFlow()
                     .addStatement("_gobject.ref()")
                     .endControlFlow()
                     .addStatement("return _object");
@@ -456,31 +805,38 @@ public class MethodGenerator {
     }
 
     private void functionPointerInvocation(boolean longAsInt) {
-        // Function descriptor
-        var generator = new CallableGenerator(vm);
-        builder.addCode(generator.generateFunctionDescriptorDeclaration());
+        // Function descriptor, only used when the downcall handle for the
+        // parent function pointer is not cached yet
+        var generator = new CallableGenerator(vm, false, false, future);
+        var fdesc = CodeBlock.builder()
+                .add("() -> ")
+                .add(generator.generateFunctionDescriptor())
+                .build();
 
         // Function pointer lookup
         switch (vm.parent()) {
             case Class c ->
-                    builder.addStatement("$T _func = $T.lookupVirtualMethodParent(handle(),$W$T.getMemoryLayout(),$W$S)",
-                            MemorySegment.class,
+                    builder.addStatement("$T _func = $T.lookupVirtualMethodParentHandle(handle(),$W$T.class,$W$T::getMemoryLayout,$W$S,$W$L)",
+                            MethodHandle.class,
                             ClassNames.OVERRIDES,
                             c.typeStruct().typeName(),
-                            vm.name());
+                            c.typeStruct().typeName(),
+                            vm.name(),
+                            fdesc);
             case Interface i ->
-                    builder.addStatement("$T _func = $T.lookupVirtualMethodParent(handle(),$W$T.getMemoryLayout(),$W$S,$W$T.getType())",
-                            MemorySegment.class,
+                    builder.addStatement("$T _func = $T.lookupVirtualMethodParentHandle(handle(),$W$T.class,$W$T::getMemoryLayout,$W$S,$W$L,$W$T.getType())",
+                            MethodHandle.class,
                             ClassNames.OVERRIDES,
                             i.typeStruct().typeName(),
+                            i.typeStruct().typeName(),
                             vm.name(),
+                            fdesc,
                             i.typeName());
             default -> throw new IllegalStateException("Virtual Method parent must be a class or an interface");
         }
 
         // Function pointer null-check
-        builder.addStatement("if (_func.equals($T.NULL)) throw new $T()",
-                MemorySegment.class,
+        builder.addStatement("if (_func == null) throw new $T()",
                 NullPointerException.class);
 
         // Result assignment
@@ -502,8 +858,7 @@ public class MethodGenerator {
         }
 
         // Function pointer invocation
-        invoke.add("$interop:T.downcallHandle(_func, _fdesc)$Z.invokeExact($Z", "interop",
-                        ClassNames.INTEROP)
+        invoke.add("_func.invokeExact($Z")
                 .add(generator.marshalParameters(longAsInt))
                 .add(");\n");
 
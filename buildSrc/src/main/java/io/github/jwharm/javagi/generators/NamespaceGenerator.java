@@ -61,7 +61,16 @@ public class NamespaceGenerator extends RegisteredTypeGenerator {
 
         for (Function f : ns.functions()) {
             if (!f.skip()) {
-                builder.addMethod(new MethodGenerator(f).generate());
+                var generator = new MethodGenerator(f);
+                builder.addMethod(generator.generate());
+                if (generator.hasBorrowedVariant())
+                    builder.addMethod(generator.generateBorrowed());
+                if (generator.hasPrimitiveOutVariant())
+                    builder.addMethod(generator.generatePrimitiveOut());
+                if (generator.hasIntFlagsVariant())
+                    builder.addMethod(generator.generateIntFlags());
+                if (generator.hasFutureVariant())
+                    builder.addMethod(generator.generateFuture());
                 if (f.hasBitfieldParameters())
                     builder.addMethod(new CallableGenerator(f)
                                                 .generateBitfieldOverload());
@@ -20,6 +20,7 @@
 package io.github.jwharm.javagi.generators;
 
 import com.squareup.javapoet.MethodSpec;
+import io.github.jwharm.javagi.configuration.ClassNames;
 import io.github.jwharm.javagi.gir.*;
 import io.github.jwharm.javagi.util.PartialStatement;
 
@@ -36,6 +37,7 @@ public class PostprocessingGenerator extends TypedValueGenerator {
 
     public void generate(MethodSpec.Builder builder) {
         readPointer(builder);
+        copyBackHeapAllocatedRecord(builder);
     }
 
     public void generateUpcall(MethodSpec.Builder builder) {
@@ -43,6 +45,16 @@ public class PostprocessingGenerator extends TypedValueGenerator {
         writeOutParameter(builder);
     }
 
+    // Copy the native copy of a heap-allocated struct back into the struct,
+    // unless the native function received a const pointer
+    private void copyBackHeapAllocatedRecord(MethodSpec.Builder builder) {
+        if (p.isHeapAllocatableRecord() && (!type.cType().startsWith("const ")))
+            builder.addStatement("$T.copyBack(_$LNative, $L)",
+                    ClassNames.INTEROP,
+                    getName(),
+                    getName());
+    }
+
     private void readPointer(MethodSpec.Builder builder) {
         if (p.isOutParameter()
                 || (type != null
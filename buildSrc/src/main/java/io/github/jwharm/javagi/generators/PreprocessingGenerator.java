@@ -47,6 +47,7 @@ public class PreprocessingGenerator extends TypedValueGenerator {
         arrayLength(builder);
         scope(builder);
         transferOwnership(builder);
+        heapAllocatedRecord(builder);
     }
 
     public void generateUpcall(MethodSpec.Builder builder) {
@@ -197,9 +198,12 @@ public class PreprocessingGenerator extends TypedValueGenerator {
                 && (type.cType() == null || (! type.cType().endsWith("**")))) {
             builder.beginControlFlow("if ($L instanceof $T _gobject)",
                             getName(), ClassNames.GOBJECT)
+                    .beginControlFlow("if ($T.isDebugEnabled())",
+                            ClassNames.GLIB_LOGGER)
                     .addStatement("$T.debug($S, _gobject.handle().address())",
                             ClassNames.GLIB_LOGGER,
                             "Ref " + type.typeName() + " %ld")
+                    .endControlFlow()
                     .addStatement("_gobject.ref()")
                     .endControlFlow();
         }
@@ -218,6 +222,17 @@ public class PreprocessingGenerator extends TypedValueGenerator {
         }
     }
 
+    // Copy a struct that is allocated on the Java heap into native memory.
+    // No arena is needed, so calls with native structs are not affected.
+    private void heapAllocatedRecord(MethodSpec.Builder builder) {
+        if (p.isHeapAllocatableRecord())
+            builder.addStatement("$T _$LNative = $T.toNative($L)",
+                    MemorySegment.class,
+                    getName(),
+                    ClassNames.INTEROP,
+                    getName());
+    }
+
     // Read the value from a pointer to a primitive value and store it
     // in a Java Alias object
     private void readPrimitiveAliasPointer(MethodSpec.Builder builder) {
@@ -107,10 +107,11 @@ public class RecordGenerator extends RegisteredTypeGenerator {
 
         builder.addMethod(memoryAddressConstructor());
 
-        MethodSpec memoryLayout = new MemoryLayoutGenerator()
-                                            .generateMemoryLayout(rec);
+        var layoutGenerator = new MemoryLayoutGenerator();
+        MethodSpec memoryLayout = layoutGenerator.generateMemoryLayout(rec);
         if (memoryLayout != null) {
-            builder.addMethod(memoryLayout);
+            builder.addField(layoutGenerator.generateMemoryLayoutField(rec))
+                   .addMethod(memoryLayout);
 
             if (noNewConstructor())
                 builder.addMethod(constructor(true))
@@ -120,6 +121,9 @@ public class RecordGenerator extends RegisteredTypeGenerator {
                 builder.addMethod(constructorWithParameters(true))
                        .addMethod(constructorWithParameters(false));
 
+            if (outerClass == null && rec.heapAllocatable())
+                builder.addMethod(ofHeap());
+
             for (Field f : rec.fields())
                 generateField(f);
 
@@ -150,6 +154,11 @@ public class RecordGenerator extends RegisteredTypeGenerator {
         FieldGenerator generator = new FieldGenerator(f);
         Callback cb = f.callback();
 
+        // Static VarHandle to read and write the field
+        FieldSpec varHandle = generator.generateVarHandleField();
+        if (varHandle != null)
+            builder.addField(varHandle);
+
         // Generate read-method
         if (cb == null) {
             if (f.anyType() instanceof Type t
@@ -222,6 +231,29 @@ public class RecordGenerator extends RegisteredTypeGenerator {
         return spec.build();
     }
 
+    private MethodSpec ofHeap() {
+        var spec = MethodSpec.methodBuilder("ofHeap")
+                .addJavadoc("""
+                        Allocate a new $1T in a Java heap array. The struct is
+                        not tracked by a Cleaner. When it is passed to a native
+                        function, it is copied into native memory for the
+                        duration of the call.
+                        
+                        @return the new, heap-allocated $1T
+                        """, rec.typeName())
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(rec.typeName());
+
+        // Platform check
+        if (rec.doPlatformCheck())
+            spec.addStatement("$T.checkSupportedPlatform($L)",
+                    ClassNames.PLATFORM, Platform.toStringLiterals(rec.platforms()));
+
+        return spec.addStatement("return new $T($T.allocateHeap(getMemoryLayout()))",
+                        rec.typeName(), ClassNames.INTEROP)
+                .build();
+    }
+
     private Stream<Field> streamAccessibleFields() {
         return rec.fields().stream()
                 .filter(not(Field::isDisguised))
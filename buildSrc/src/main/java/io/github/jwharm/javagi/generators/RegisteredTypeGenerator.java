@@ -76,7 +76,16 @@ public class RegisteredTypeGenerator {
     protected void addFunctions(TypeSpec.Builder builder) {
         for (Function f : filter(rt.children(), Function.class)) {
             if (!f.skip()) {
-                builder.addMethod(new MethodGenerator(f).generate());
+                var generator = new MethodGenerator(f);
+                builder.addMethod(generator.generate());
+                if (generator.hasBorrowedVariant())
+                    builder.addMethod(generator.generateBorrowed());
+                if (generator.hasPrimitiveOutVariant())
+                    builder.addMethod(generator.generatePrimitiveOut());
+                if (generator.hasIntFlagsVariant())
+                    builder.addMethod(generator.generateIntFlags());
+                if (generator.hasFutureVariant())
+                    builder.addMethod(generator.generateFuture());
                 if (f.hasBitfieldParameters())
                     builder.addMethod(new CallableGenerator(f)
                                                 .generateBitfieldOverload());
@@ -98,7 +107,16 @@ public class RegisteredTypeGenerator {
     protected void addMethods(TypeSpec.Builder builder) {
         for (Method m : filter(rt.children(), Method.class)) {
             if (!m.skip()) {
-                builder.addMethod(new MethodGenerator(m).generate());
+                var generator = new MethodGenerator(m);
+                builder.addMethod(generator.generate());
+                if (generator.hasBorrowedVariant())
+                    builder.addMethod(generator.generateBorrowed());
+                if (generator.hasPrimitiveOutVariant())
+                    builder.addMethod(generator.generatePrimitiveOut());
+                if (generator.hasIntFlagsVariant())
+                    builder.addMethod(generator.generateIntFlags());
+                if (generator.hasFutureVariant())
+                    builder.addMethod(generator.generateFuture());
                 if (m.hasBitfieldParameters())
                     builder.addMethod(new CallableGenerator(m)
                                                 .generateBitfieldOverload());
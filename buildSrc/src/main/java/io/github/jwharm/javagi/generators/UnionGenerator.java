@@ -53,10 +53,11 @@ public class UnionGenerator extends RegisteredTypeGenerator {
                 .addStaticBlock(staticBlock())
                 .addMethod(memoryAddressConstructor());
 
-        MethodSpec memoryLayout = new MemoryLayoutGenerator()
-                                            .generateMemoryLayout(union);
+        var layoutGenerator = new MemoryLayoutGenerator();
+        MethodSpec memoryLayout = layoutGenerator.generateMemoryLayout(union);
         if (memoryLayout != null) {
-            builder.addMethod(memoryLayout);
+            builder.addField(layoutGenerator.generateMemoryLayoutField(union))
+                   .addMethod(memoryLayout);
             builder.addMethod(constructor());
         }
 
@@ -43,6 +43,19 @@ public final class InstanceParameter extends GirElement implements TypedValue {
         return false;
     }
 
+    /**
+     * Check if this is a method of a record that can be allocated on the
+     * Java heap. Such a record is copied into native memory before the
+     * method is called.
+     */
+    public boolean isHeapAllocatableRecord() {
+        return parent().parent() instanceof Method
+                && type() != null
+                && type().isPointer()
+                && type().get() instanceof Record record
+                && record.heapAllocatable();
+    }
+
     public Type type() {
         return findAny(children(), Type.class);
     }
@@ -105,6 +105,42 @@ public final class Parameter extends GirElement implements TypedValue {
         );
     }
 
+    /**
+     * Check if this is an out-parameter for an int, long, double or gboolean
+     * value, that can be passed in a primitive out-parameter holder instead
+     * of an {@code Out<>} object.
+     */
+    public boolean isPrimitiveOutParameter() {
+        if (!isOutParameter()
+                || isArrayLengthParameter()
+                || (!(anyType() instanceof Type type))
+                || (!type.isPrimitive())
+                || type.isLong()
+                || type.cType() == null
+                || (!type.cType().endsWith("*"))
+                || type.cType().endsWith("**"))
+            return false;
+
+        return type.isBoolean()
+                || List.of("int", "long", "double").contains(type.javaType());
+    }
+
+    /**
+     * Check if this parameter is a pointer to a record that can be allocated
+     * on the Java heap. Such a record is copied into native memory before the
+     * function is called.
+     */
+    public boolean isHeapAllocatableRecord() {
+        return (!isOutParameter())
+                && parent().parent() instanceof Callable c
+                && (!(c instanceof Signal || c instanceof Callback))
+                && anyType() instanceof Type type
+                && type.isPointer()
+                && (!type.cType().endsWith("**"))
+                && type.get() instanceof Record record
+                && record.heapAllocatable();
+    }
+
     @Override
     public boolean allocatesMemory() {
         if (TypedValue.super.allocatesMemory() || isOutParameter())
@@ -129,6 +129,50 @@ public final class Record extends Multiplatform
         return TypeReference.get(ns, attr("glib:is-gtype-struct-for"));
     }
 
+    /**
+     * Check if this record can be allocated on the Java heap: The memory
+     * layout must be known, and the fields may only contain primitive
+     * values, enums, flags, fixed-size arrays of primitive values and nested
+     * records that can be allocated on the heap. Records with pointer fields
+     * are excluded.
+     */
+    public boolean heapAllocatable() {
+        if (isOpaque() || hasOpaqueStructFields() || !unions().isEmpty()
+                || foreign() || generic() || isGTypeStructFor() != null)
+            return false;
+
+        for (Field field : fields()) {
+            if (field.bits() > 0)
+                continue;
+
+            boolean isValue = switch (field.anyType()) {
+                case null -> false; // callback
+                case Array array -> array.fixedSize() > 0
+                        && array.anyType() instanceof Type type
+                        && isValueType(type);
+                case Type type -> isValueType(type);
+            };
+            if (!isValue)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isValueType(Type type) {
+        if (type.isPointer())
+            return false;
+
+        if (type.isPrimitive())
+            return true;
+
+        return switch (type.get()) {
+            case Alias alias -> isValueType(alias.type());
+            case FlaggedType _ -> true;
+            case Record record -> record.heapAllocatable();
+            case null, default -> false;
+        };
+    }
+
     @Override
     public Callable copyFunction() {
         // copy-function specified in annotation
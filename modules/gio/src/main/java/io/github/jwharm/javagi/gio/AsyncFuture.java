@@ -0,0 +1,176 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.gio;
+
+import io.github.jwharm.javagi.base.GErrorException;
+import io.github.jwharm.javagi.gobject.InstanceCache;
+import org.gnome.gio.AsyncResult;
+import org.gnome.gio.Cancellable;
+import org.gnome.gio.Gio;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link CompletableFuture} for an asynchronous GIO operation. This class
+ * is used by the generated {@code CompletableFuture} variants of
+ * {@code *_async} functions.
+ * <p>
+ * All operations share one {@code GAsyncReadyCallback} upcall stub. The
+ * pending future is found with an id that is passed in the {@code user_data}
+ * parameter, so no arena or Cleaner is allocated per operation. When the
+ * operation is ready, the {@code *_finish} function is called and the future
+ * is completed with its result, or completed exceptionally with the
+ * {@link GErrorException}.
+ * <p>
+ * Every future owns a {@link Cancellable}. Cancelling the future cancels the
+ * operation.
+ *
+ * @param <T> the result type of the {@code *_finish} function
+ */
+public final class AsyncFuture<T> extends CompletableFuture<T> {
+
+    static {
+        Gio.javagi$ensureInitialized();
+    }
+
+    /**
+     * Calls the {@code *_finish} function of an asynchronous operation.
+     *
+     * @param <T> the result type of the {@code *_finish} function
+     */
+    @FunctionalInterface
+    public interface Finish<T> {
+        /**
+         * Finish the operation.
+         *
+         * @param  result the result of the operation
+         * @return the value to complete the future with
+         * @throws GErrorException when the operation failed
+         */
+        T finish(AsyncResult result) throws GErrorException;
+    }
+
+    /**
+     * The upcall stub of the {@code GAsyncReadyCallback} that completes the
+     * pending futures
+     */
+    public static final MemorySegment READY_CALLBACK;
+
+    // Pending futures, by id
+    private static final Map<Long, AsyncFuture<?>> PENDING = new ConcurrentHashMap<>();
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    // Allocate the upcall stub for the GAsyncReadyCallback
+    static {
+        try {
+            FunctionDescriptor _fdesc = FunctionDescriptor.ofVoid(
+                    ValueLayout.ADDRESS, ValueLayout.ADDRESS, ValueLayout.ADDRESS);
+            MethodHandle _handle = MethodHandles.lookup().findStatic(
+                    AsyncFuture.class, "ready", _fdesc.toMethodType());
+            READY_CALLBACK = Linker.nativeLinker().upcallStub(_handle, _fdesc, Arena.global());
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private final long id;
+    private final Finish<T> finish;
+    private final Cancellable cancellable;
+
+    /**
+     * Create a pending future for an asynchronous operation that will be
+     * completed with the result of the provided finish function.
+     *
+     * @param finish calls the {@code *_finish} function of the operation
+     */
+    public AsyncFuture(Finish<T> finish) {
+        this.finish = finish;
+        this.cancellable = new Cancellable();
+        this.id = NEXT_ID.getAndIncrement();
+        PENDING.put(id, this);
+    }
+
+    /**
+     * Get the Cancellable that is cancelled when this future is cancelled.
+     *
+     * @return the Cancellable of the operation
+     */
+    public Cancellable cancellable() {
+        return cancellable;
+    }
+
+    /**
+     * Get the {@code user_data} pointer that identifies this future in the
+     * {@link #READY_CALLBACK}.
+     *
+     * @return the id of this future as a pointer
+     */
+    public MemorySegment userData() {
+        return MemorySegment.ofAddress(id);
+    }
+
+    /**
+     * Cancel the future, and the operation with its {@link Cancellable}. The
+     * operation will still run its callback, but the result is discarded.
+     *
+     * @param  mayInterruptIfRunning ignored
+     * @return whether the future was cancelled
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled)
+            cancellable.cancel();
+        return cancelled;
+    }
+
+    /*
+     * Called by native code when an asynchronous operation is ready. Finish
+     * the operation and complete the future. The finish function is called
+     * even when the future was cancelled, to release the result.
+     */
+    private static void ready(MemorySegment sourceObject,
+                              MemorySegment res,
+                              MemorySegment userData) {
+        AsyncFuture<?> future = PENDING.remove(userData.address());
+        if (future != null)
+            future.finishOperation(res);
+    }
+
+    private void finishOperation(MemorySegment res) {
+        try {
+            var result = (AsyncResult) InstanceCache.getForType(
+                    res, AsyncResult.AsyncResultImpl::new, false);
+            complete(finish.finish(result));
+        } catch (Throwable t) {
+            completeExceptionally(t);
+        }
+    }
+}
@@ -0,0 +1,583 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.gio;
+
+import io.github.jwharm.javagi.Constants;
+import io.github.jwharm.javagi.base.GErrorException;
+import io.github.jwharm.javagi.glib.types.VariantCodec;
+import io.github.jwharm.javagi.gobject.InstanceCache;
+import io.github.jwharm.javagi.interop.Interop;
+import org.gnome.gio.DBusConnection;
+import org.gnome.gio.DBusMessage;
+import org.gnome.gio.DBusMessageFlags;
+import org.gnome.gio.DBusMessageType;
+import org.gnome.gio.Gio;
+import org.gnome.glib.GLib;
+import org.gnome.glib.LogLevelFlags;
+import org.gnome.glib.Variant;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A message-level D-Bus client and server on top of a
+ * {@link DBusConnection}.
+ * <p>
+ * Message bodies are records that are serialized to and from GVariants with
+ * {@link VariantCodec}. Method calls are sent without waiting for the reply,
+ * so many calls can be in flight at the same time. The replies are matched
+ * with the serial numbers of the calls, and complete the
+ * {@code CompletableFuture} that was returned by
+ * {@link #call(String, String, String, String, Record, Class)}.
+ * <p>
+ * Incoming messages are routed by a message filter on the connection: method
+ * calls are dispatched to the handlers that were registered with
+ * {@link #register(String, String, String, Class, Function)}, and signals to
+ * the listeners that were registered with
+ * {@link #subscribe(String, String, Class, BiConsumer)}, using a routing
+ * table per interface. Other messages are left to the connection. On a
+ * message bus connection, a match rule must be added to receive signals.
+ * <p>
+ * Replies, method handlers and signal listeners run on the provided
+ * {@link Executor}. By default, they run on the GDBus worker thread, and
+ * must not block.
+ */
+public final class DBusChannel implements java.lang.AutoCloseable {
+
+    static {
+        Gio.javagi$ensureInitialized();
+    }
+
+    private static final MethodHandle g_dbus_connection_add_filter =
+            Interop.downcallHandle(
+                    "g_dbus_connection_add_filter",
+                    FunctionDescriptor.of(ValueLayout.JAVA_INT,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_dbus_connection_send_message =
+            Interop.downcallHandle(
+                    "g_dbus_connection_send_message",
+                    FunctionDescriptor.of(ValueLayout.JAVA_INT,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS,
+                            ValueLayout.JAVA_INT, ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_dbus_message_get_message_type =
+            Interop.downcallHandle(
+                    "g_dbus_message_get_message_type",
+                    FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_dbus_message_get_reply_serial =
+            Interop.downcallHandle(
+                    "g_dbus_message_get_reply_serial",
+                    FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_dbus_message_get_path =
+            Interop.downcallHandle(
+                    "g_dbus_message_get_path",
+                    FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_dbus_message_get_interface =
+            Interop.downcallHandle(
+                    "g_dbus_message_get_interface",
+                    FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_dbus_message_get_member =
+            Interop.downcallHandle(
+                    "g_dbus_message_get_member",
+                    FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_object_ref =
+            Interop.downcallHandle(
+                    "g_object_ref",
+                    FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+                    false);
+
+    // The D-Bus error name of exceptions thrown by method handlers
+    private static final String ERROR_FAILED = "org.freedesktop.DBus.Error.Failed";
+
+    // Open channels, by id
+    private static final Map<Long, DBusChannel> CHANNELS = new ConcurrentHashMap<>();
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    // The upcall stub for the GDBusMessageFilterFunction
+    private static final MemorySegment FILTER_CB_SYM;
+
+    static {
+        try {
+            FunctionDescriptor _fdesc = FunctionDescriptor.of(ValueLayout.ADDRESS,
+                    ValueLayout.ADDRESS, ValueLayout.ADDRESS,
+                    ValueLayout.JAVA_INT, ValueLayout.ADDRESS);
+            MethodHandle _handle = MethodHandles.lookup().findStatic(
+                    DBusChannel.class, "filter", _fdesc.toMethodType());
+            FILTER_CB_SYM = Linker.nativeLinker().upcallStub(_handle, _fdesc, Arena.global());
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private final DBusConnection connection;
+    private final Executor executor;
+    private final long id;
+    private final int filterId;
+
+    // Calls that are waiting for a reply, by serial number
+    private final Map<Integer, PendingCall<?>> pending = new ConcurrentHashMap<>();
+    private final Object sendLock = new Object();
+
+    // Method handlers, by object path, interface and method name
+    private final Map<MethodKey, MethodHandler<?>> methods = new ConcurrentHashMap<>();
+
+    // Signal listeners, by interface and signal name
+    private final Map<String, Map<String, List<SignalListener<?>>>> signals =
+            new ConcurrentHashMap<>();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Create a channel that runs replies, method handlers and signal
+     * listeners on the GDBus worker thread.
+     *
+     * @param connection the D-Bus connection
+     */
+    public DBusChannel(DBusConnection connection) {
+        this(connection, Runnable::run);
+    }
+
+    /**
+     * Create a channel that runs replies, method handlers and signal
+     * listeners on the provided executor.
+     *
+     * @param connection the D-Bus connection
+     * @param executor   the executor for replies, method handlers and signal
+     *                   listeners
+     */
+    public DBusChannel(DBusConnection connection, Executor executor) {
+        this.connection = requireNonNull(connection);
+        this.executor = requireNonNull(executor);
+        this.id = NEXT_ID.getAndIncrement();
+        CHANNELS.put(id, this);
+        try {
+            this.filterId = (int) g_dbus_connection_add_filter.invokeExact(
+                    connection.handle(), FILTER_CB_SYM,
+                    MemorySegment.ofAddress(id), MemorySegment.NULL);
+        } catch (Throwable _err) {
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        }
+    }
+
+    /**
+     * Get the D-Bus connection of this channel.
+     *
+     * @return the D-Bus connection
+     */
+    public DBusConnection connection() {
+        return connection;
+    }
+
+    /**
+     * Call a D-Bus method. The call is sent without waiting for the reply.
+     * <p>
+     * The reply body is deserialized into the provided reply type. Use
+     * {@code Void.class} to ignore the reply body, and {@code Variant.class}
+     * to get the reply body as a GVariant. When the reply is a D-Bus error,
+     * the future is completed exceptionally with a {@link GErrorException}.
+     * Cancelling the future discards the reply.
+     *
+     * @param  destination   the bus name of the receiver, or {@code null} on
+     *                       a peer-to-peer connection
+     * @param  path          the object path
+     * @param  interfaceName the D-Bus interface name
+     * @param  method        the method name
+     * @param  args          the method arguments, or {@code null} for no
+     *                       arguments
+     * @param  replyType     the Java type of the reply body
+     * @param  <R>           the Java type of the reply body
+     * @return a future that is completed with the reply
+     * @throws IllegalStateException if the channel is closed
+     */
+    public <R> CompletableFuture<R> call(String destination,
+                                         String path,
+                                         String interfaceName,
+                                         String method,
+                                         Record args,
+                                         Class<R> replyType) {
+        requireNonNull(replyType);
+        checkOpen();
+        var message = DBusMessage.methodCall(destination, path, interfaceName, method);
+        if (args != null)
+            message.setBody(encode(args));
+
+        var call = new PendingCall<>(replyType);
+        synchronized (sendLock) {
+            int serial;
+            try {
+                serial = send(message);
+            } catch (GErrorException e) {
+                call.completeExceptionally(e);
+                return call;
+            }
+            pending.put(serial, call);
+            call.whenComplete((r, t) -> pending.remove(serial, call));
+        }
+        return call;
+    }
+
+    /**
+     * Register a handler for a D-Bus method. The handler receives the
+     * deserialized method arguments, and returns the reply body, or
+     * {@code null} for an empty reply. When the handler throws an exception,
+     * a D-Bus error is returned.
+     *
+     * @param path          the object path
+     * @param interfaceName the D-Bus interface name
+     * @param method        the method name
+     * @param argsType      the Java type of the method arguments
+     * @param handler       the method handler
+     * @param <A>           the Java type of the method arguments
+     */
+    public <A extends Record> void register(String path,
+                                            String interfaceName,
+                                            String method,
+                                            Class<A> argsType,
+                                            Function<A, ? extends Record> handler) {
+        var key = new MethodKey(requireNonNull(path),
+                requireNonNull(interfaceName), requireNonNull(method));
+        methods.put(key, new MethodHandler<>(VariantCodec.of(argsType), handler));
+    }
+
+    /**
+     * Remove the handler for a D-Bus method.
+     *
+     * @param path          the object path
+     * @param interfaceName the D-Bus interface name
+     * @param method        the method name
+     */
+    public void unregister(String path, String interfaceName, String method) {
+        methods.remove(new MethodKey(path, interfaceName, method));
+    }
+
+    /**
+     * Subscribe to a D-Bus signal. The listener receives the object path of
+     * the sender and the deserialized signal arguments.
+     *
+     * @param  interfaceName the D-Bus interface name
+     * @param  signal        the signal name
+     * @param  argsType      the Java type of the signal arguments
+     * @param  listener      the signal listener
+     * @param  <A>           the Java type of the signal arguments
+     * @return a subscription that can be cancelled
+     */
+    public <A extends Record> Subscription subscribe(String interfaceName,
+                                                     String signal,
+                                                     Class<A> argsType,
+                                                     BiConsumer<String, A> listener) {
+        var entry = new SignalListener<>(VariantCodec.of(argsType), requireNonNull(listener));
+        var listeners = signals
+                .computeIfAbsent(requireNonNull(interfaceName), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(requireNonNull(signal), k -> new CopyOnWriteArrayList<>());
+        listeners.add(entry);
+        return new Subscription(() -> listeners.remove(entry));
+    }
+
+    /**
+     * Emit a D-Bus signal.
+     *
+     * @param  destination   the bus name of the receiver, or {@code null} to
+     *                       broadcast the signal
+     * @param  path          the object path of the sender
+     * @param  interfaceName the D-Bus interface name
+     * @param  signal        the signal name
+     * @param  args          the signal arguments, or {@code null} for no
+     *                       arguments
+     * @throws GErrorException       when the message could not be sent
+     * @throws IllegalStateException if the channel is closed
+     */
+    public void emit(String destination,
+                     String path,
+                     String interfaceName,
+                     String signal,
+                     Record args) throws GErrorException {
+        checkOpen();
+        var message = DBusMessage.signal(path, interfaceName, signal);
+        if (destination != null)
+            message.setDestination(destination);
+        if (args != null)
+            message.setBody(encode(args));
+        send(message);
+    }
+
+    /**
+     * Remove the message filter from the connection. Pending calls are
+     * completed exceptionally with an {@link IllegalStateException}. The
+     * connection is not closed.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        connection.removeFilter(filterId);
+        CHANNELS.remove(id);
+        var exception = new IllegalStateException("The D-Bus channel is closed");
+        for (var call : pending.values())
+            call.completeExceptionally(exception);
+        pending.clear();
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("The D-Bus channel is closed");
+    }
+
+    // Serialize a record into a message body
+    @SuppressWarnings("unchecked") // the codec was created for this class
+    private static Variant encode(Record args) {
+        var codec = (VariantCodec<Record>) VariantCodec.of(args.getClass());
+        return codec.encode(args);
+    }
+
+    // Deserialize a message body (null for an empty body) into a record
+    private static <T> T decode(VariantCodec<T> codec, Variant body) {
+        if (body == null)
+            body = Variant.tuple(new Variant[0]);
+        return codec.decode(body);
+    }
+
+    // Send a message, and return the serial number that was assigned to it
+    private int send(DBusMessage message) throws GErrorException {
+        try (var _arena = Arena.ofConfined()) {
+            MemorySegment _serial = _arena.allocate(ValueLayout.JAVA_INT);
+            MemorySegment _gerror = _arena.allocate(ValueLayout.ADDRESS);
+            int _result = (int) g_dbus_connection_send_message.invokeExact(
+                    connection.handle(), message.handle(), 0, _serial, _gerror);
+            if (GErrorException.isErrorSet(_gerror))
+                throw new GErrorException(_gerror);
+            return _serial.get(ValueLayout.JAVA_INT, 0);
+        } catch (GErrorException e) {
+            throw e;
+        } catch (Throwable _err) {
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        }
+    }
+
+    /*
+     * Called by the GDBus worker thread for every incoming and outgoing
+     * message. The message is owned by the filter: it is returned to pass it
+     * on to the connection, or NULL is returned when it was consumed.
+     */
+    private static MemorySegment filter(MemorySegment connection,
+                                        MemorySegment message,
+                                        int incoming,
+                                        MemorySegment userData) {
+        DBusChannel channel = CHANNELS.get(userData.address());
+        if (channel == null || incoming == 0)
+            return message;
+        try {
+            return channel.route(message) ? MemorySegment.NULL : message;
+        } catch (Throwable t) {
+            GLib.log(Constants.LOG_DOMAIN, LogLevelFlags.LEVEL_CRITICAL,
+                    "Cannot route D-Bus message: %s\n", t.toString());
+            return message;
+        }
+    }
+
+    /*
+     * Route an incoming message. The message type, serial and names are read
+     * with direct downcalls; a Java proxy is only created for messages that
+     * are handled by this channel. Returns true when the message was
+     * consumed.
+     */
+    private boolean route(MemorySegment message) throws Throwable {
+        int type = (int) g_dbus_message_get_message_type.invokeExact(message);
+
+        if (type == DBusMessageType.METHOD_RETURN.getValue()
+                || type == DBusMessageType.ERROR.getValue()) {
+            int serial = (int) g_dbus_message_get_reply_serial.invokeExact(message);
+            PendingCall<?> call = pending.remove(serial);
+            if (call == null) {
+                // The reply may have arrived before the call was registered
+                synchronized (sendLock) {
+                    call = pending.remove(serial);
+                }
+            }
+            if (call == null)
+                return false;
+            var reply = wrap(message);
+            var c = call;
+            executor.execute(() -> c.completeWith(reply));
+            return true;
+        }
+
+        if (type == DBusMessageType.METHOD_CALL.getValue()) {
+            var key = new MethodKey(
+                    Interop.getStringFrom((MemorySegment) g_dbus_message_get_path.invokeExact(message)),
+                    Interop.getStringFrom((MemorySegment) g_dbus_message_get_interface.invokeExact(message)),
+                    Interop.getStringFrom((MemorySegment) g_dbus_message_get_member.invokeExact(message)));
+            MethodHandler<?> handler = methods.get(key);
+            if (handler == null)
+                return false;
+            var call = wrap(message);
+            executor.execute(() -> handler.invoke(this, call));
+            return true;
+        }
+
+        if (type == DBusMessageType.SIGNAL.getValue()) {
+            var byName = signals.get(Interop.getStringFrom(
+                    (MemorySegment) g_dbus_message_get_interface.invokeExact(message)));
+            if (byName == null)
+                return false;
+            var listeners = byName.get(Interop.getStringFrom(
+                    (MemorySegment) g_dbus_message_get_member.invokeExact(message)));
+            if (listeners == null || listeners.isEmpty())
+                return false;
+
+            // Signals are passed on to the connection, so take a new reference
+            var signal = wrap((MemorySegment) g_object_ref.invokeExact(message));
+            executor.execute(() -> {
+                for (var listener : listeners)
+                    listener.invoke(signal);
+            });
+            return false;
+        }
+
+        return false;
+    }
+
+    // Create a Java proxy that owns the (fully transferred) message
+    private static DBusMessage wrap(MemorySegment message) {
+        return (DBusMessage) InstanceCache.getForType(message, DBusMessage::new, true);
+    }
+
+    private static void logException(String what, Throwable t) {
+        GLib.log(Constants.LOG_DOMAIN, LogLevelFlags.LEVEL_CRITICAL,
+                "Exception in D-Bus %s: %s\n", what, t.toString());
+    }
+
+    /**
+     * A signal subscription.
+     */
+    public static final class Subscription {
+        private final Runnable cancel;
+
+        private Subscription(Runnable cancel) {
+            this.cancel = cancel;
+        }
+
+        /**
+         * Stop receiving the signal.
+         */
+        public void cancel() {
+            cancel.run();
+        }
+    }
+
+    private record MethodKey(String path, String interfaceName, String method) {
+    }
+
+    // A call that is waiting for its reply
+    private static final class PendingCall<R> extends CompletableFuture<R> {
+        private final Class<R> replyType;
+
+        PendingCall(Class<R> replyType) {
+            this.replyType = replyType;
+        }
+
+        void completeWith(DBusMessage reply) {
+            try {
+                if (reply.getMessageType() == DBusMessageType.ERROR) {
+                    reply.toGerror();
+                    completeExceptionally(new IllegalStateException(
+                            "D-Bus error reply without error name"));
+                } else if (replyType == Void.class) {
+                    complete(null);
+                } else if (replyType == Variant.class) {
+                    complete(replyType.cast(reply.getBody()));
+                } else {
+                    complete(decode(VariantCodec.of(replyType), reply.getBody()));
+                }
+            } catch (Throwable t) {
+                completeExceptionally(t);
+            }
+        }
+    }
+
+    // A registered method handler
+    private record MethodHandler<A>(VariantCodec<A> codec,
+                                    Function<A, ? extends Record> handler) {
+
+        void invoke(DBusChannel channel, DBusMessage call) {
+            DBusMessage reply;
+            try {
+                Record result = handler.apply(decode(codec, call.getBody()));
+                reply = call.newMethodReply();
+                if (result != null)
+                    reply.setBody(encode(result));
+            } catch (Throwable t) {
+                reply = call.newMethodErrorLiteral(ERROR_FAILED, String.valueOf(t.getMessage()));
+            }
+
+            if (call.getFlags().contains(DBusMessageFlags.NO_REPLY_EXPECTED))
+                return;
+            try {
+                channel.send(reply);
+            } catch (GErrorException e) {
+                logException("method reply", e);
+            }
+        }
+    }
+
+    // A registered signal listener
+    private record SignalListener<A>(VariantCodec<A> codec,
+                                     BiConsumer<String, A> listener) {
+
+        void invoke(DBusMessage signal) {
+            try {
+                listener.accept(signal.getPath(), decode(codec, signal.getBody()));
+            } catch (Throwable t) {
+                logException("signal listener", t);
+            }
+        }
+    }
+}
@@ -0,0 +1,551 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.gio;
+
+import io.github.jwharm.javagi.base.GErrorException;
+import io.github.jwharm.javagi.interop.Interop;
+import org.gnome.gio.AsyncResult;
+import org.gnome.gio.File;
+import org.gnome.gio.FileType;
+import org.gnome.gio.Gio;
+import org.gnome.glib.GLib;
+import org.gnome.glib.MainContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Walks a directory tree with {@code GFileEnumerator}, and returns the files
+ * as a {@link Stream} or {@link Flow.Publisher} of {@link FileEntry}
+ * records.
+ * <p>
+ * Directories are enumerated with {@code g_file_enumerator_next_files_async}
+ * in batches of a configurable size. The attributes of every batch are
+ * copied into {@code FileEntry} records in one pass over the returned
+ * {@code GFileInfo} list, without creating Java proxy objects. Multiple
+ * subdirectories are enumerated in parallel by the GIO worker threads, up to
+ * a configurable number of directories at the same time.
+ * <p>
+ * Every walk runs on its own thread, that iterates a private
+ * {@link MainContext} for the asynchronous operations. The walk pauses when
+ * the consumer does not keep up. Symbolic links are not followed. When a
+ * directory cannot be enumerated, the walk ends with an
+ * {@link UncheckedIOException}.
+ */
+public final class DirectoryWalker {
+
+    static {
+        Gio.javagi$ensureInitialized();
+    }
+
+    private static final MethodHandle g_object_ref = Interop.downcallHandle(
+            "g_object_ref",
+            FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_object_unref = Interop.downcallHandle(
+            "g_object_unref",
+            FunctionDescriptor.ofVoid(ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_list_free = Interop.downcallHandle(
+            "g_list_free",
+            FunctionDescriptor.ofVoid(ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_file_enumerate_children_async =
+            Interop.downcallHandle(
+                    "g_file_enumerate_children_async",
+                    FunctionDescriptor.ofVoid(ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS, ValueLayout.JAVA_INT,
+                            ValueLayout.JAVA_INT, ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_file_enumerate_children_finish =
+            Interop.downcallHandle(
+                    "g_file_enumerate_children_finish",
+                    FunctionDescriptor.of(ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_file_enumerator_next_files_async =
+            Interop.downcallHandle(
+                    "g_file_enumerator_next_files_async",
+                    FunctionDescriptor.ofVoid(ValueLayout.ADDRESS,
+                            ValueLayout.JAVA_INT, ValueLayout.JAVA_INT,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_file_enumerator_next_files_finish =
+            Interop.downcallHandle(
+                    "g_file_enumerator_next_files_finish",
+                    FunctionDescriptor.of(ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_file_get_child = Interop.downcallHandle(
+            "g_file_get_child",
+            FunctionDescriptor.of(ValueLayout.ADDRESS,
+                    ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_file_info_get_name = Interop.downcallHandle(
+            "g_file_info_get_name",
+            FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_file_info_get_file_type = Interop.downcallHandle(
+            "g_file_info_get_file_type",
+            FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_file_info_get_size = Interop.downcallHandle(
+            "g_file_info_get_size",
+            FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_file_info_get_is_hidden = Interop.downcallHandle(
+            "g_file_info_get_is_hidden",
+            FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_file_info_get_attribute_uint64 =
+            Interop.downcallHandle(
+                    "g_file_info_get_attribute_uint64",
+                    FunctionDescriptor.of(ValueLayout.JAVA_LONG,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+                    false);
+
+    // The attributes that are copied into a FileEntry
+    private static final MemorySegment ATTRIBUTES = Arena.global().allocateFrom(
+            "standard::name,standard::type,standard::size,standard::is-hidden,time::modified");
+    private static final MemorySegment TIME_MODIFIED = Arena.global().allocateFrom("time::modified");
+
+    // G_FILE_QUERY_INFO_NOFOLLOW_SYMLINKS
+    private static final int NOFOLLOW_SYMLINKS = 1;
+
+    private static final int DIRECTORY = FileType.DIRECTORY.getValue();
+
+    private final File root;
+    private final int batchSize;
+    private final int concurrency;
+
+    /**
+     * Create a directory walker that enumerates 256 files per batch, and
+     * up to 4 directories in parallel.
+     *
+     * @param root the directory to walk
+     */
+    public DirectoryWalker(File root) {
+        this(root, 256, 4);
+    }
+
+    /**
+     * Create a directory walker.
+     *
+     * @param root        the directory to walk
+     * @param batchSize   the number of files to enumerate per batch
+     * @param concurrency the maximum number of directories that are
+     *                    enumerated in parallel
+     */
+    public DirectoryWalker(File root, int batchSize, int concurrency) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batchSize must be positive");
+        if (concurrency < 1)
+            throw new IllegalArgumentException("concurrency must be positive");
+        this.root = requireNonNull(root);
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Walk the directory tree, and return the files (excluding the root
+     * directory itself) as a sequential stream. The order of the files is
+     * not defined.
+     * <p>
+     * The stream must be closed, or consumed completely, to end the walk.
+     * When a directory cannot be enumerated, the stream throws an
+     * {@link UncheckedIOException}.
+     *
+     * @return a stream of the files in the directory tree
+     */
+    public Stream<FileEntry> stream() {
+        var sink = new QueueSink(concurrency * 2);
+        var walk = start(sink);
+        return StreamSupport.stream(sink, false).onClose(walk::cancel);
+    }
+
+    /**
+     * Return a publisher that walks the directory tree for every subscriber.
+     * The walk pauses when the subscriber does not request more files, and
+     * ends when the subscription is cancelled. When a directory cannot be
+     * enumerated, the subscriber receives an {@link UncheckedIOException}.
+     *
+     * @return a publisher of the files in the directory tree
+     */
+    public Flow.Publisher<FileEntry> publisher() {
+        return subscriber -> {
+            var publisher = new SubmissionPublisher<FileEntry>();
+            publisher.subscribe(subscriber);
+            start(new Sink() {
+                @Override
+                public boolean accept(List<FileEntry> batch) {
+                    for (var entry : batch)
+                        publisher.submit(entry);
+                    return publisher.hasSubscribers();
+                }
+
+                @Override
+                public void complete() {
+                    publisher.close();
+                }
+
+                @Override
+                public void fail(RuntimeException error) {
+                    publisher.closeExceptionally(error);
+                }
+            });
+        };
+    }
+
+    private Walk start(Sink sink) {
+        var walk = new Walk(sink);
+        walk.thread = Thread.ofPlatform()
+                .name("DirectoryWalker")
+                .daemon()
+                .start(walk);
+        return walk;
+    }
+
+    // Receives the batches of a walk, on the walk thread
+    private interface Sink {
+        // Returns false to end the walk
+        boolean accept(List<FileEntry> batch);
+
+        void complete();
+
+        void fail(RuntimeException error);
+    }
+
+    // A directory that is waiting to be enumerated, or being enumerated
+    private record Directory(MemorySegment file, String path) {
+    }
+
+    /*
+     * A walk over the directory tree. All callbacks run on the walk thread,
+     * that iterates its own main context, so the state is not shared with
+     * other threads (except the cancelled flag).
+     */
+    private final class Walk implements Runnable {
+        private final Sink sink;
+        private final Deque<Directory> directories = new ArrayDeque<>();
+        private int active = 0;
+        private RuntimeException error;
+        private volatile boolean cancelled = false;
+        private Thread thread;
+
+        Walk(Sink sink) {
+            this.sink = sink;
+        }
+
+        void cancel() {
+            cancelled = true;
+            thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            var context = new MainContext();
+            context.pushThreadDefault();
+            try {
+                directories.push(new Directory(ref(root.handle()), root.getParseName()));
+                while (!stopped() && (active > 0 || !directories.isEmpty())) {
+                    while (active < concurrency && !directories.isEmpty() && !stopped())
+                        enumerate(directories.pop());
+                    if (active > 0)
+                        context.iteration(true);
+                }
+
+                // Wait for the running operations, to release their results
+                while (active > 0)
+                    context.iteration(true);
+            } finally {
+                for (var directory : directories)
+                    unref(directory.file());
+                context.popThreadDefault();
+            }
+
+            // A cancelled walk has no consumer anymore, that would take the
+            // terminal item from the sink
+            if (cancelled)
+                return;
+            if (error != null)
+                sink.fail(error);
+            else
+                sink.complete();
+        }
+
+        private boolean stopped() {
+            return cancelled || error != null;
+        }
+
+        private void enumerate(Directory directory) {
+            active++;
+            var future = new AsyncFuture<Void>(res -> {
+                enumerated(directory, res);
+                return null;
+            });
+            try {
+                g_file_enumerate_children_async.invokeExact(directory.file(),
+                        ATTRIBUTES, NOFOLLOW_SYMLINKS, GLib.PRIORITY_DEFAULT,
+                        future.cancellable().handle(), AsyncFuture.READY_CALLBACK,
+                        future.userData());
+            } catch (Throwable _err) {
+                throw new AssertionError("Unexpected exception occurred: ", _err);
+            }
+        }
+
+        /*
+         * The callbacks never throw: an exception would only complete the
+         * AsyncFuture, and the walk would wait for the directory forever.
+         * Exceptions end the walk, and the directory is always released.
+         */
+        private void enumerated(Directory directory, AsyncResult res) {
+            MemorySegment enumerator = MemorySegment.NULL;
+            try (var _arena = Arena.ofConfined()) {
+                MemorySegment _gerror = _arena.allocate(ValueLayout.ADDRESS);
+                enumerator = (MemorySegment) g_file_enumerate_children_finish.invokeExact(
+                        directory.file(), res.handle(), _gerror);
+                if (GErrorException.isErrorSet(_gerror)) {
+                    failed(directory, new GErrorException(_gerror));
+                } else if (!stopped()) {
+                    nextFiles(directory, enumerator);
+                    return;
+                }
+            } catch (Throwable _err) {
+                crashed(_err);
+            }
+            finished(directory, enumerator);
+        }
+
+        private void nextFiles(Directory directory, MemorySegment enumerator) {
+            var future = new AsyncFuture<Void>(res -> {
+                received(directory, enumerator, res);
+                return null;
+            });
+            try {
+                g_file_enumerator_next_files_async.invokeExact(enumerator,
+                        batchSize, GLib.PRIORITY_DEFAULT,
+                        future.cancellable().handle(), AsyncFuture.READY_CALLBACK,
+                        future.userData());
+            } catch (Throwable _err) {
+                throw new AssertionError("Unexpected exception occurred: ", _err);
+            }
+        }
+
+        private void received(Directory directory, MemorySegment enumerator,
+                              AsyncResult res) {
+            try (var _arena = Arena.ofConfined()) {
+                MemorySegment _gerror = _arena.allocate(ValueLayout.ADDRESS);
+                var list = (MemorySegment) g_file_enumerator_next_files_finish.invokeExact(
+                        enumerator, res.handle(), _gerror);
+                if (GErrorException.isErrorSet(_gerror)) {
+                    failed(directory, new GErrorException(_gerror));
+                } else if (!MemorySegment.NULL.equals(list)) {
+                    // An empty list means that the directory has been enumerated
+                    List<FileEntry> batch = readEntries(directory, list);
+                    if (!stopped() && !sink.accept(batch))
+                        cancelled = true;
+                    if (!stopped()) {
+                        nextFiles(directory, enumerator);
+                        return;
+                    }
+                }
+            } catch (Throwable _err) {
+                crashed(_err);
+            }
+            finished(directory, enumerator);
+        }
+
+        /*
+         * Copy the attributes of the GFileInfos in the list into FileEntry
+         * records, queue the subdirectories, and free the list.
+         */
+        private List<FileEntry> readEntries(Directory directory, MemorySegment list) {
+            List<FileEntry> batch = new ArrayList<>(batchSize);
+            long nextOffset = ValueLayout.ADDRESS.byteSize();
+            try {
+                MemorySegment node = list.reinterpret(nextOffset * 2);
+                while (true) {
+                    MemorySegment info = node.get(ValueLayout.ADDRESS, 0);
+                    MemorySegment namePtr = (MemorySegment) g_file_info_get_name.invokeExact(info);
+                    String name = Interop.getStringFrom(namePtr);
+                    int type = (int) g_file_info_get_file_type.invokeExact(info);
+                    long size = (long) g_file_info_get_size.invokeExact(info);
+                    int hidden = (int) g_file_info_get_is_hidden.invokeExact(info);
+                    long modified = (long) g_file_info_get_attribute_uint64.invokeExact(info, TIME_MODIFIED);
+
+                    String path = directory.path() + "/" + name;
+                    batch.add(new FileEntry(path, name, FileType.of(type), size, modified, hidden != 0));
+                    if (type == DIRECTORY) {
+                        var child = (MemorySegment) g_file_get_child.invokeExact(directory.file(), namePtr);
+                        directories.push(new Directory(child, path));
+                    }
+
+                    g_object_unref.invokeExact(info);
+                    MemorySegment next = node.get(ValueLayout.ADDRESS, nextOffset);
+                    if (MemorySegment.NULL.equals(next))
+                        break;
+                    node = next.reinterpret(nextOffset * 2);
+                }
+                g_list_free.invokeExact(list);
+            } catch (Throwable _err) {
+                throw new AssertionError("Unexpected exception occurred: ", _err);
+            }
+            return batch;
+        }
+
+        private void failed(Directory directory, GErrorException e) {
+            if (error == null)
+                error = new UncheckedIOException(new IOException(
+                        "Cannot enumerate " + directory.path(), e));
+        }
+
+        private void crashed(Throwable t) {
+            if (error == null)
+                error = t instanceof RuntimeException e ? e
+                        : new IllegalStateException("Unexpected exception occurred: ", t);
+        }
+
+        // Release the directory and its enumerator
+        private void finished(Directory directory, MemorySegment enumerator) {
+            if (!MemorySegment.NULL.equals(enumerator))
+                unref(enumerator);
+            unref(directory.file());
+            active--;
+        }
+    }
+
+    /*
+     * A sink that passes the batches to a stream through a bounded queue.
+     * The queue contains batches, and an end marker or an exception.
+     */
+    private static final class QueueSink extends Spliterators.AbstractSpliterator<FileEntry>
+            implements Sink {
+
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> queue;
+        private Iterator<FileEntry> current = Collections.emptyIterator();
+        private boolean done = false;
+
+        QueueSink(int capacity) {
+            super(Long.MAX_VALUE, DISTINCT | NONNULL);
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public boolean accept(List<FileEntry> batch) {
+            return put(batch);
+        }
+
+        @Override
+        public void complete() {
+            put(END);
+        }
+
+        @Override
+        public void fail(RuntimeException error) {
+            put(error);
+        }
+
+        // Returns false when the walk thread was interrupted
+        private boolean put(Object item) {
+            try {
+                queue.put(item);
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // the queue only contains batches
+        public boolean tryAdvance(Consumer<? super FileEntry> action) {
+            while (!current.hasNext()) {
+                if (done)
+                    return false;
+                Object item;
+                try {
+                    item = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while walking the directory tree", e);
+                }
+                if (item == END) {
+                    done = true;
+                    return false;
+                }
+                if (item instanceof RuntimeException error) {
+                    done = true;
+                    throw error;
+                }
+                current = ((List<FileEntry>) item).iterator();
+            }
+            action.accept(current.next());
+            return true;
+        }
+    }
+
+    private static MemorySegment ref(MemorySegment object) {
+        try {
+            return (MemorySegment) g_object_ref.invokeExact(object);
+        } catch (Throwable _err) {
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        }
+    }
+
+    private static void unref(MemorySegment object) {
+        try {
+            g_object_unref.invokeExact(object);
+        } catch (Throwable _err) {
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        }
+    }
+}
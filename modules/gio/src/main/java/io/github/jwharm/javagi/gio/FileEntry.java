@@ -0,0 +1,52 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.gio;
+
+import org.gnome.gio.FileType;
+
+/**
+ * A file or directory that was found by a {@link DirectoryWalker}. The
+ * attributes are copied from the {@code GFileInfo} when the directory is
+ * enumerated.
+ *
+ * @param path     the path of the file (the parse name of the directory
+ *                 that was walked, followed by the relative path)
+ * @param name     the name of the file
+ * @param type     the file type. Symbolic links are not followed.
+ * @param size     the size of the file in bytes
+ * @param modified the modification time, in seconds since the Unix epoch
+ * @param hidden   whether the file is a hidden file
+ */
+public record FileEntry(String path,
+                        String name,
+                        FileType type,
+                        long size,
+                        long modified,
+                        boolean hidden) {
+
+    /**
+     * Check whether this entry is a directory.
+     *
+     * @return true when the file type is {@link FileType#DIRECTORY}
+     */
+    public boolean isDirectory() {
+        return type == FileType.DIRECTORY;
+    }
+}
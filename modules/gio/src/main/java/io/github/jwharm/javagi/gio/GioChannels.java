@@ -0,0 +1,495 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.gio;
+
+import io.github.jwharm.javagi.base.GErrorException;
+import io.github.jwharm.javagi.interop.Interop;
+import org.gnome.gio.Cancellable;
+import org.gnome.gio.Gio;
+import org.gnome.gio.InputStream;
+import org.gnome.gio.OutputStream;
+import org.gnome.gio.Seekable;
+import org.gnome.glib.SeekType;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Adapters between GIO streams and Java NIO channels.
+ * <p>
+ * The channels call {@code g_input_stream_read()} and
+ * {@code g_output_stream_write()} with the memory of the buffer as the
+ * argument. Direct {@link ByteBuffer}s and native {@link MemorySegment}s are
+ * read into and written from directly, without an intermediate copy. Heap
+ * buffers are copied through a small native buffer that is allocated once
+ * per channel.
+ * <p>
+ * Use {@link java.nio.channels.Channels} to convert the channels to
+ * {@link java.io.InputStream} and {@link java.io.OutputStream} objects.
+ */
+public final class GioChannels {
+
+    static {
+        Gio.javagi$ensureInitialized();
+    }
+
+    // The size of the native buffer that is used for heap buffers
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private static final MethodHandle g_input_stream_read =
+            Interop.downcallHandle(
+                    "g_input_stream_read",
+                    FunctionDescriptor.of(ValueLayout.JAVA_LONG,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS,
+                            ValueLayout.JAVA_LONG, ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_output_stream_write =
+            Interop.downcallHandle(
+                    "g_output_stream_write",
+                    FunctionDescriptor.of(ValueLayout.JAVA_LONG,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS,
+                            ValueLayout.JAVA_LONG, ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_clear_error =
+            Interop.downcallHandle(
+                    "g_clear_error",
+                    FunctionDescriptor.ofVoid(ValueLayout.ADDRESS),
+                    false);
+
+    // Prevent instantiation
+    private GioChannels() {}
+
+    /**
+     * Create a channel that reads from a GIO input stream.
+     *
+     * @param  stream      the input stream
+     * @param  cancellable optional cancellable for the read operations
+     * @return a new readable channel
+     */
+    public static InputStreamChannel newChannel(InputStream stream,
+                                                @Nullable Cancellable cancellable) {
+        return new InputStreamChannel(stream, cancellable);
+    }
+
+    /**
+     * Create a channel that writes to a GIO output stream.
+     *
+     * @param  stream      the output stream
+     * @param  cancellable optional cancellable for the write operations
+     * @return a new writable channel
+     */
+    public static OutputStreamChannel newChannel(OutputStream stream,
+                                                 @Nullable Cancellable cancellable) {
+        return new OutputStreamChannel(stream, cancellable);
+    }
+
+    /**
+     * Create a seekable channel that reads from a GIO input stream that
+     * implements {@link Seekable}, such as {@link org.gnome.gio.FileInputStream}.
+     * The channel is read-only.
+     *
+     * @param  stream      the seekable input stream
+     * @param  cancellable optional cancellable for the operations
+     * @return a new seekable channel
+     * @throws IllegalArgumentException if the stream is not seekable
+     */
+    public static SeekableByteChannel newSeekableChannel(InputStream stream,
+                                                         @Nullable Cancellable cancellable) {
+        return new SeekableStreamChannel(new InputStreamChannel(stream, cancellable),
+                seekable(stream), cancellable);
+    }
+
+    /**
+     * Create a seekable channel that writes to a GIO output stream that
+     * implements {@link Seekable}, such as {@link org.gnome.gio.FileOutputStream}.
+     * The channel is write-only.
+     *
+     * @param  stream      the seekable output stream
+     * @param  cancellable optional cancellable for the operations
+     * @return a new seekable channel
+     * @throws IllegalArgumentException if the stream is not seekable
+     */
+    public static SeekableByteChannel newSeekableChannel(OutputStream stream,
+                                                         @Nullable Cancellable cancellable) {
+        return new SeekableStreamChannel(new OutputStreamChannel(stream, cancellable),
+                seekable(stream), cancellable);
+    }
+
+    private static Seekable seekable(Object stream) {
+        if (stream instanceof Seekable seekable && seekable.canSeek())
+            return seekable;
+        throw new IllegalArgumentException("Stream is not seekable");
+    }
+
+    /*
+     * Throw an IOException for the GError, and clear the GError so the
+     * pointer can be reused.
+     */
+    private static IOException toIOException(MemorySegment gerror) {
+        var exception = new IOException(new GErrorException(gerror));
+        try {
+            g_clear_error.invokeExact(gerror);
+        } catch (Throwable _err) {
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        }
+        return exception;
+    }
+
+    private static MemorySegment handle(Cancellable cancellable) {
+        return cancellable == null ? MemorySegment.NULL : cancellable.handle();
+    }
+
+    /**
+     * A {@link ReadableByteChannel} that reads from a GIO
+     * {@link InputStream}.
+     */
+    public static final class InputStreamChannel implements ReadableByteChannel {
+
+        private final InputStream stream;
+        private final Cancellable cancellable;
+        private final MemorySegment gerror;
+        private MemorySegment copyBuffer;
+        private final Arena arena = Arena.ofAuto();
+
+        private InputStreamChannel(InputStream stream, Cancellable cancellable) {
+            this.stream = stream;
+            this.cancellable = cancellable;
+            this.gerror = arena.allocate(ValueLayout.ADDRESS);
+        }
+
+        /**
+         * Reads a sequence of bytes from the stream into the buffer. Direct
+         * buffers are read into directly.
+         *
+         * @param  dst the buffer into which bytes are to be transferred
+         * @return the number of bytes read, possibly zero, or -1 if the
+         *         stream has reached end-of-stream
+         * @throws IOException if the stream returns an error
+         */
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException {
+            if (dst.isReadOnly())
+                throw new IllegalArgumentException("Read-only buffer");
+            if (!dst.hasRemaining()) {
+                ensureOpen();
+                return 0;
+            }
+            int n = (int) read(MemorySegment.ofBuffer(dst));
+            if (n > 0)
+                dst.position(dst.position() + n);
+            return n;
+        }
+
+        /**
+         * Reads a sequence of bytes from the stream into the memory segment.
+         * Native memory segments are read into directly.
+         *
+         * @param  dst the memory segment into which bytes are to be
+         *             transferred
+         * @return the number of bytes read, possibly zero, or -1 if the
+         *         stream has reached end-of-stream
+         * @throws IOException if the stream returns an error
+         */
+        public synchronized long read(MemorySegment dst) throws IOException {
+            ensureOpen();
+            if (dst.isReadOnly())
+                throw new IllegalArgumentException("Read-only memory segment");
+            if (dst.byteSize() == 0)
+                return 0;
+
+            if (dst.isNative())
+                return readNative(dst, dst.byteSize());
+
+            // Heap memory: read into the native copy buffer
+            var buffer = copyBuffer();
+            long n = readNative(buffer, Math.min(dst.byteSize(), buffer.byteSize()));
+            if (n > 0)
+                MemorySegment.copy(buffer, 0, dst, 0, n);
+            return n;
+        }
+
+        private long readNative(MemorySegment dst, long count) throws IOException {
+            long n;
+            try {
+                n = (long) g_input_stream_read.invokeExact(stream.handle(),
+                        dst, count, handle(cancellable), gerror);
+            } catch (Throwable _err) {
+                throw new AssertionError("Unexpected exception occurred: ", _err);
+            }
+            if (n < 0)
+                throw toIOException(gerror);
+            return n == 0 ? -1 : n;
+        }
+
+        private MemorySegment copyBuffer() {
+            if (copyBuffer == null)
+                copyBuffer = arena.allocate(COPY_BUFFER_SIZE);
+            return copyBuffer;
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!isOpen())
+                throw new ClosedChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !stream.isClosed();
+        }
+
+        /**
+         * Closes the input stream.
+         *
+         * @throws IOException if the stream returns an error
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                stream.close(cancellable);
+            } catch (GErrorException gerror) {
+                throw new IOException(gerror);
+            }
+        }
+    }
+
+    /**
+     * A {@link WritableByteChannel} that writes to a GIO
+     * {@link OutputStream}.
+     */
+    public static final class OutputStreamChannel implements WritableByteChannel {
+
+        private final OutputStream stream;
+        private final Cancellable cancellable;
+        private final MemorySegment gerror;
+        private MemorySegment copyBuffer;
+        private final Arena arena = Arena.ofAuto();
+
+        private OutputStreamChannel(OutputStream stream, Cancellable cancellable) {
+            this.stream = stream;
+            this.cancellable = cancellable;
+            this.gerror = arena.allocate(ValueLayout.ADDRESS);
+        }
+
+        /**
+         * Writes a sequence of bytes from the buffer to the stream. Direct
+         * buffers are written from directly.
+         *
+         * @param  src the buffer from which bytes are to be retrieved
+         * @return the number of bytes written, possibly zero
+         * @throws IOException if the stream returns an error
+         */
+        @Override
+        public synchronized int write(ByteBuffer src) throws IOException {
+            int n = (int) write(MemorySegment.ofBuffer(src));
+            src.position(src.position() + n);
+            return n;
+        }
+
+        /**
+         * Writes a sequence of bytes from the memory segment to the stream.
+         * Native memory segments are written from directly.
+         *
+         * @param  src the memory segment from which bytes are to be
+         *             retrieved
+         * @return the number of bytes written, possibly zero
+         * @throws IOException if the stream returns an error
+         */
+        public synchronized long write(MemorySegment src) throws IOException {
+            if (!isOpen())
+                throw new ClosedChannelException();
+            if (src.byteSize() == 0)
+                return 0;
+
+            if (src.isNative())
+                return writeNative(src, src.byteSize());
+
+            // Heap memory: write from the native copy buffer
+            if (copyBuffer == null)
+                copyBuffer = arena.allocate(COPY_BUFFER_SIZE);
+            long count = Math.min(src.byteSize(), copyBuffer.byteSize());
+            MemorySegment.copy(src, 0, copyBuffer, 0, count);
+            return writeNative(copyBuffer, count);
+        }
+
+        private long writeNative(MemorySegment src, long count) throws IOException {
+            long n;
+            try {
+                n = (long) g_output_stream_write.invokeExact(stream.handle(),
+                        src, count, handle(cancellable), gerror);
+            } catch (Throwable _err) {
+                throw new AssertionError("Unexpected exception occurred: ", _err);
+            }
+            if (n < 0)
+                throw toIOException(gerror);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !stream.isClosed();
+        }
+
+        /**
+         * Closes the output stream.
+         *
+         * @throws IOException if the stream returns an error
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                stream.close(cancellable);
+            } catch (GErrorException gerror) {
+                throw new IOException(gerror);
+            }
+        }
+    }
+
+    /*
+     * A SeekableByteChannel for a GIO stream that implements GSeekable.
+     * Either the input channel or the output channel is set.
+     */
+    private static final class SeekableStreamChannel implements SeekableByteChannel {
+
+        private final InputStreamChannel input;
+        private final OutputStreamChannel output;
+        private final Seekable seekable;
+        private final Cancellable cancellable;
+
+        SeekableStreamChannel(InputStreamChannel input, Seekable seekable,
+                              Cancellable cancellable) {
+            this(input, null, seekable, cancellable);
+        }
+
+        SeekableStreamChannel(OutputStreamChannel output, Seekable seekable,
+                              Cancellable cancellable) {
+            this(null, output, seekable, cancellable);
+        }
+
+        private SeekableStreamChannel(InputStreamChannel input,
+                                      OutputStreamChannel output,
+                                      Seekable seekable,
+                                      Cancellable cancellable) {
+            this.input = input;
+            this.output = output;
+            this.seekable = seekable;
+            this.cancellable = cancellable;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (input == null)
+                throw new NonReadableChannelException();
+            return input.read(dst);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (output == null)
+                throw new NonWritableChannelException();
+            return output.write(src);
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return seekable.tell();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0)
+                throw new IllegalArgumentException("Negative position");
+            seek(newPosition, SeekType.SET);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            long position = seekable.tell();
+            seek(0, SeekType.END);
+            long size = seekable.tell();
+            seek(position, SeekType.SET);
+            return size;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            if (output == null)
+                throw new NonWritableChannelException();
+            ensureOpen();
+            if (size < 0)
+                throw new IllegalArgumentException("Negative size");
+            if (size < size()) {
+                try {
+                    seekable.truncate(size, cancellable);
+                } catch (GErrorException gerror) {
+                    throw new IOException(gerror);
+                }
+            }
+            if (position() > size)
+                position(size);
+            return this;
+        }
+
+        private void seek(long offset, SeekType type) throws IOException {
+            try {
+                seekable.seek(offset, type, cancellable);
+            } catch (GErrorException gerror) {
+                throw new IOException(gerror);
+            }
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!isOpen())
+                throw new ClosedChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return input != null ? input.isOpen() : output.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (input != null)
+                input.close();
+            else
+                output.close();
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.gio;
+
+import io.github.jwharm.javagi.gobject.annotations.Property;
+import io.github.jwharm.javagi.gobject.types.Types;
+import org.gnome.gio.ListModel;
+import org.gnome.glib.Type;
+import org.gnome.gobject.GObject;
+import org.gnome.gobject.ParamSpecUInt;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * An implementation of the {@link ListModel} interface that is backed by a
+ * Java {@link ArrayList}. Items can be added and removed in bulk, and every
+ * bulk operation emits a single "items-changed" signal that covers only the
+ * changed range, so adding 100,000 items emits one signal instead of 100,000.
+ * <p>
+ * Like {@link org.gnome.gio.ListStore}, the list cannot contain {@code null}
+ * items, and it should only be modified from the thread that runs the main
+ * loop of the views that display it.
+ *
+ * @param <E> the item type
+ */
+public class JavaListModel<E extends GObject> extends GObject
+        implements ListModel<E>, ModificationCounter {
+
+    private static final Type gtype = Types.register(JavaListModel.class);
+    private final ArrayList<E> items = new ArrayList<>();
+    private Type itemType = GObject.getType();
+
+    private int modCount = 0;
+
+    /**
+     * Return the GType for the JavaListModel.
+     *
+     * @return the GType
+     */
+    public static Type getType() {
+        return gtype;
+    }
+
+    /**
+     * Construct a JavaListModel for the provided memory address.
+     *
+     * @param address the memory address of the instance in native memory
+     */
+    public JavaListModel(MemorySegment address) {
+        super(address);
+    }
+
+    /**
+     * Construct a new, empty JavaListModel with the provided item type.
+     *
+     * @param  itemType the GType of the items in the list
+     * @param  <E>      the item type
+     * @return the new list model
+     */
+    public static <E extends GObject> JavaListModel<E> newInstance(Type itemType) {
+        JavaListModel<E> model = GObject.newInstance(gtype);
+        model.itemType = itemType;
+        return model;
+    }
+
+    /**
+     * Get the GType of the items in the list.
+     *
+     * @return the item type
+     */
+    @Property(name="item-type", constructOnly = true)
+    @Override
+    public Type getItemType() {
+        return itemType;
+    }
+
+    /**
+     * Set the GType of the items in the list. This is a construct-only
+     * property.
+     *
+     * @param itemType the item type
+     */
+    @Property(name="item-type")
+    public void setItemType(Type itemType) {
+        if (itemType != null)
+            this.itemType = itemType;
+    }
+
+    /**
+     * Get the number of items in the list.
+     *
+     * @return the number of items
+     */
+    @Property(name="n-items", type=ParamSpecUInt.class, writable=false)
+    @Override
+    public int getNItems() {
+        return items.size();
+    }
+
+    @Override
+    public int modCount() {
+        return modCount;
+    }
+
+    /**
+     * Get the item at the requested position.
+     *
+     * @param  position the position of the item to fetch
+     * @return the item, or {@code null} if the position is out of range
+     */
+    @Override
+    public E getItem(int position) {
+        if (position < 0 || position >= items.size())
+            return null;
+        return items.get(position);
+    }
+
+    /**
+     * Removes {@code nRemovals} items at {@code position}, and inserts the
+     * provided items in their place. A single "items-changed" signal is
+     * emitted.
+     *
+     * @param position  the position at which to make the change
+     * @param nRemovals the number of items to remove
+     * @param additions the items to add
+     * @throws IndexOutOfBoundsException if the range is outside the list
+     * @throws NullPointerException      if one of the items is {@code null}
+     */
+    public void splice(int position, int nRemovals,
+                       @NotNull Collection<? extends E> additions) {
+        Objects.checkFromIndexSize(position, nRemovals, items.size());
+        var added = List.copyOf(additions); // rejects null items
+
+        if (nRemovals == 0 && added.isEmpty())
+            return;
+
+        var range = items.subList(position, position + nRemovals);
+        if (nRemovals == added.size()) {
+            for (int i = 0; i < nRemovals; i++)
+                range.set(i, added.get(i));
+        } else {
+            range.clear();
+            items.addAll(position, added);
+        }
+        modCount++;
+        itemsChanged(position, nRemovals, added.size());
+    }
+
+    /**
+     * Replaces all items in the list. Items at the start and end of the list
+     * that are unchanged (the same instances) are not reported, so the
+     * single "items-changed" signal only covers the range that changed.
+     *
+     * @param newItems the new items
+     * @throws NullPointerException if one of the items is {@code null}
+     */
+    public void setAll(@NotNull Collection<? extends E> newItems) {
+        var replacement = List.copyOf(newItems); // rejects null items
+        int oldSize = items.size();
+        int newSize = replacement.size();
+
+        // Skip the common prefix and suffix
+        int prefix = 0;
+        int max = Math.min(oldSize, newSize);
+        while (prefix < max && items.get(prefix) == replacement.get(prefix))
+            prefix++;
+        int suffix = 0;
+        while (suffix < max - prefix
+                && items.get(oldSize - 1 - suffix) == replacement.get(newSize - 1 - suffix))
+            suffix++;
+
+        int removed = oldSize - prefix - suffix;
+        int added = newSize - prefix - suffix;
+        if (removed == 0 && added == 0)
+            return;
+
+        splice(prefix, removed, replacement.subList(prefix, prefix + added));
+    }
+
+    /**
+     * Removes all items that satisfy the predicate. A single "items-changed"
+     * signal is emitted, that spans from the first to the last removed item.
+     *
+     * @param  filter a predicate which returns {@code true} for items to be
+     *                removed
+     * @return {@code true} if any items were removed
+     */
+    @Override
+    public boolean removeIf(@NotNull Predicate<? super E> filter) {
+        // Test every item exactly once
+        var removed = new BitSet(items.size());
+        for (int i = 0; i < items.size(); i++)
+            if (filter.test(items.get(i)))
+                removed.set(i);
+        if (removed.isEmpty())
+            return false;
+
+        // Move the kept items to the front of the range, and remove the rest
+        int first = removed.nextSetBit(0);
+        int last = removed.length() - 1;
+        int kept = first;
+        for (int i = first; i <= last; i++)
+            if (!removed.get(i))
+                items.set(kept++, items.get(i));
+        items.subList(kept, last + 1).clear();
+
+        modCount++;
+        itemsChanged(first, last + 1 - first, kept - first);
+        return true;
+    }
+
+    /**
+     * Appends the item to the end of the list.
+     *
+     * @param  e the item to add
+     * @return always {@code true}
+     */
+    @Override
+    public boolean add(E e) {
+        splice(items.size(), 0, List.of(e));
+        return true;
+    }
+
+    /**
+     * Inserts the item at the specified position.
+     *
+     * @param index   the position of the new item
+     * @param element the item to add
+     */
+    @Override
+    public void add(int index, E element) {
+        splice(index, 0, List.of(element));
+    }
+
+    /**
+     * Appends all items to the end of the list, and emits a single
+     * "items-changed" signal.
+     *
+     * @param  c the items to add
+     * @return {@code true} if the list changed
+     */
+    @Override
+    public boolean addAll(@NotNull Collection<? extends E> c) {
+        splice(items.size(), 0, c);
+        return !c.isEmpty();
+    }
+
+    /**
+     * Inserts all items at the specified position, and emits a single
+     * "items-changed" signal.
+     *
+     * @param  index the position of the first new item
+     * @param  c     the items to add
+     * @return {@code true} if the list changed
+     */
+    @Override
+    public boolean addAll(int index, @NotNull Collection<? extends E> c) {
+        splice(index, 0, c);
+        return !c.isEmpty();
+    }
+
+    /**
+     * Replaces the item at the specified position.
+     *
+     * @param  index   the position of the item to replace
+     * @param  element the new item
+     * @return the item that was previously at the position
+     */
+    @Override
+    public E set(int index, E element) {
+        E previous = items.get(index);
+        splice(index, 1, List.of(element));
+        return previous;
+    }
+
+    /**
+     * Removes the item at the specified position.
+     *
+     * @param  index the position of the item to remove
+     * @return the removed item
+     */
+    @Override
+    public E remove(int index) {
+        E previous = items.get(index);
+        splice(index, 1, List.of());
+        return previous;
+    }
+
+    /**
+     * Removes the first occurrence of the item from the list.
+     *
+     * @param  o the item to remove
+     * @return {@code true} if the item was removed
+     */
+    @Override
+    public boolean remove(Object o) {
+        int index = items.indexOf(o);
+        if (index == -1)
+            return false;
+        splice(index, 1, List.of());
+        return true;
+    }
+
+    /**
+     * Removes all items that are contained in the provided collection.
+     *
+     * @param  c the items to remove
+     * @return {@code true} if any items were removed
+     */
+    @Override
+    public boolean removeAll(@NotNull Collection<?> c) {
+        return removeIf(c::contains);
+    }
+
+    /**
+     * Removes all items that are not contained in the provided collection.
+     *
+     * @param  c the items to keep
+     * @return {@code true} if any items were removed
+     */
+    @Override
+    public boolean retainAll(@NotNull Collection<?> c) {
+        return removeIf(item -> !c.contains(item));
+    }
+
+    /**
+     * Removes all items from the list.
+     */
+    @Override
+    public void clear() {
+        splice(0, items.size(), List.of());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The items are read from the backing Java list.
+     */
+    @Override
+    public int indexOf(Object o) {
+        return items.indexOf(o);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The items are read from the backing Java list.
+     */
+    @Override
+    public int lastIndexOf(Object o) {
+        return items.lastIndexOf(o);
+    }
+}
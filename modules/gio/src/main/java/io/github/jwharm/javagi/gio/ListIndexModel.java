@@ -20,7 +20,11 @@
 package io.github.jwharm.javagi.gio;
 
 import java.lang.foreign.*;
-import java.util.ArrayList;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
 
 import io.github.jwharm.javagi.gobject.annotations.Property;
 import io.github.jwharm.javagi.gobject.types.Types;
@@ -32,12 +36,36 @@ import org.gnome.gobject.*;
  * An implementation of the {@link ListModel} interface that returns the
  * index of a list item instead of an actual item. The index can be used
  * to retrieve Java objects from a regular {@link java.util.List}.
+ * <p>
+ * The {@link ListIndex} items are created on demand, and kept in a cache of
+ * weak references. Only the items that are in use (for example, the visible
+ * rows of a list view) are kept alive, so the memory usage does not depend
+ * on the size of the model. As long as an item is in use, the same instance
+ * is returned for its position.
  */
 public class ListIndexModel extends GObject
-        implements ListModel<ListIndexModel.ListIndex> {
+        implements ListModel<ListIndexModel.ListIndex>, ModificationCounter {
 
     private static final Type gtype = Types.register(ListIndexModel.class);
-    private ArrayList<ListIndex> items = new ArrayList<>();
+
+    private int size = 0;
+    private int modCount = 0;
+
+    // Items by position. The entries of garbage-collected items are removed
+    // when their reference is enqueued.
+    private final Map<Integer, IndexReference> cache = new HashMap<>();
+    private final ReferenceQueue<ListIndex> cleared = new ReferenceQueue<>();
+
+    // A weak reference that remembers the position of its item
+    private static final class IndexReference extends WeakReference<ListIndex> {
+        private final int position;
+
+        IndexReference(ListIndex item, int position,
+                       ReferenceQueue<ListIndex> queue) {
+            super(item, queue);
+            this.position = position;
+        }
+    }
 
     /**
      * Return the GType for the ListIndexModel.
@@ -70,16 +98,27 @@ public class ListIndexModel extends GObject
 
     /**
      * Set the size field to the provided value, and emit the "items-changed"
-     * signal.
+     * signal. The existing items keep their index, so the signal only
+     * reports the items that were added to or removed from the end of the
+     * list.
      *
      * @param size the new list model size
      */
     public void setSize(int size) {
-        int oldSize = items.size();
-        items = new ArrayList<>(size);
-        for (int i = 0; i < size; i++)
-            items.add(ListIndex.newInstance(i));
-        itemsChanged(0, oldSize, size);
+        int oldSize = this.size;
+        if (size == oldSize)
+            return;
+
+        this.size = size;
+        synchronized (cache) {
+            cache.keySet().removeIf(position -> position >= size);
+        }
+
+        modCount++;
+        if (size > oldSize)
+            itemsChanged(oldSize, 0, size - oldSize);
+        else
+            itemsChanged(size, oldSize - size, 0);
     }
 
     /**
@@ -110,11 +149,12 @@ public class ListIndexModel extends GObject
     @Property(name="n-items", type=ParamSpecUInt.class, writable=false)
     @Override
     public int getNItems() {
-        return items.size();
+        return size;
     }
 
     /**
      * Returns a {@link ListIndex} with the requested position as its value.
+     * The item is created when it is not in the cache.
      *
      * @param  position the position of the item to fetch
      * @return a {@link ListIndex} with the requested position as its value
@@ -123,7 +163,27 @@ public class ListIndexModel extends GObject
     public ListIndex getItem(int position) {
         if (position < 0 || position >= getNItems())
             return null;
-        return items.get(position);
+
+        synchronized (cache) {
+            expungeCleared();
+            var ref = cache.get(position);
+            ListIndex item = ref == null ? null : ref.get();
+            if (item == null) {
+                item = ListIndex.newInstance(position);
+                cache.put(position, new IndexReference(item, position, cleared));
+            }
+            return item;
+        }
+    }
+
+    // Remove the entries of garbage-collected items. The entry is only
+    // removed when it still contains the cleared reference.
+    private void expungeCleared() {
+        Reference<? extends ListIndex> ref;
+        while ((ref = cleared.poll()) != null) {
+            var indexRef = (IndexReference) ref;
+            cache.remove(indexRef.position, indexRef);
+        }
     }
 
     /**
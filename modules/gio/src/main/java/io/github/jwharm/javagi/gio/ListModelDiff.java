@@ -0,0 +1,251 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.gio;
+
+import org.gnome.gio.ListStore;
+import org.gnome.gobject.GObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Utility to replace the contents of a list model with the smallest number
+ * of changes.
+ * <p>
+ * The current and new items are compared with a key function, using the
+ * Myers difference algorithm. The differences are applied as a series of
+ * splice operations, so views that display the list model keep the rows of
+ * the items that did not change, instead of rebuilding every row.
+ * <p>
+ * Items with equal keys are considered unchanged: the instance that is
+ * already in the list model is kept. When the lists differ in more than
+ * {@link #MAX_EDIT_DISTANCE} items (after removing the common prefix and
+ * suffix), the changed range is replaced with one splice operation.
+ */
+public final class ListModelDiff {
+
+    /**
+     * The maximum number of inserted and removed items for which a minimal
+     * diff is calculated. This keeps the worst-case running time bounded.
+     */
+    public static final int MAX_EDIT_DISTANCE = 1000;
+
+    /**
+     * A single splice operation: remove {@code nRemovals} items at
+     * {@code position}, and insert {@code additions} in their place. The
+     * position is relative to the list after the preceding splice
+     * operations have been applied.
+     *
+     * @param position  the position at which to make the change
+     * @param nRemovals the number of items to remove
+     * @param additions the items to insert
+     * @param <E>       the item type
+     */
+    public record Splice<E>(int position, int nRemovals, List<E> additions) {
+    }
+
+    // Prevent instantiation
+    private ListModelDiff() {}
+
+    /**
+     * Replace the contents of a {@link ListStore} with the new items, using
+     * the smallest number of splice operations.
+     *
+     * @param store    the list store to update
+     * @param newItems the new contents of the list store
+     * @param key      function that returns a key that identifies an item
+     * @param <E>      the item type
+     */
+    public static <E extends GObject> void replace(ListStore<E> store,
+                                                   List<? extends E> newItems,
+                                                   Function<? super E, ?> key) {
+        List<E> oldItems = new ArrayList<>(store);
+        for (var splice : diff(oldItems, newItems, key))
+            store.splice(splice.position(), splice.nRemovals(),
+                    splice.additions().toArray(new GObject[0]));
+    }
+
+    /**
+     * Replace the contents of a {@link JavaListModel} with the new items,
+     * using the smallest number of splice operations.
+     *
+     * @param model    the list model to update
+     * @param newItems the new contents of the list model
+     * @param key      function that returns a key that identifies an item
+     * @param <E>      the item type
+     */
+    public static <E extends GObject> void replace(JavaListModel<E> model,
+                                                   List<? extends E> newItems,
+                                                   Function<? super E, ?> key) {
+        List<E> oldItems = new ArrayList<>(model);
+        for (var splice : diff(oldItems, newItems, key))
+            model.splice(splice.position(), splice.nRemovals(), splice.additions());
+    }
+
+    /**
+     * Calculate the splice operations that transform the old list into the
+     * new list.
+     *
+     * @param  oldItems the current items
+     * @param  newItems the new items
+     * @param  key      function that returns a key that identifies an item
+     * @param  <E>      the item type
+     * @return the splice operations, in the order in which they must be
+     *         applied
+     */
+    public static <E> List<Splice<E>> diff(List<? extends E> oldItems,
+                                           List<? extends E> newItems,
+                                           Function<? super E, ?> key) {
+        int oldSize = oldItems.size();
+        int newSize = newItems.size();
+
+        // Skip the common prefix and suffix
+        int prefix = 0;
+        int max = Math.min(oldSize, newSize);
+        while (prefix < max && Objects.equals(key.apply(oldItems.get(prefix)),
+                                              key.apply(newItems.get(prefix))))
+            prefix++;
+        int suffix = 0;
+        while (suffix < max - prefix
+                && Objects.equals(key.apply(oldItems.get(oldSize - 1 - suffix)),
+                                  key.apply(newItems.get(newSize - 1 - suffix))))
+            suffix++;
+
+        int n = oldSize - prefix - suffix;
+        int m = newSize - prefix - suffix;
+        List<Splice<E>> result = new ArrayList<>();
+        if (n == 0 && m == 0)
+            return result;
+        if (n == 0 || m == 0) {
+            result.add(new Splice<>(prefix, n, copy(newItems, prefix, m)));
+            return result;
+        }
+
+        // Map the keys to ints, so they can be compared quickly
+        var ids = new HashMap<Object, Integer>();
+        int[] a = new int[n];
+        int[] b = new int[m];
+        for (int i = 0; i < n; i++)
+            a[i] = ids.computeIfAbsent(key.apply(oldItems.get(prefix + i)),
+                    _ -> ids.size());
+        for (int j = 0; j < m; j++)
+            b[j] = ids.computeIfAbsent(key.apply(newItems.get(prefix + j)),
+                    _ -> ids.size());
+
+        boolean[] deleted = new boolean[n];
+        boolean[] inserted = new boolean[m];
+        if (!myers(a, b, deleted, inserted)) {
+            result.add(new Splice<>(prefix, n, copy(newItems, prefix, m)));
+            return result;
+        }
+
+        // Group the removed and inserted items into splice operations
+        int i = 0, j = 0, position = prefix;
+        while (i < n || j < m) {
+            if (i < n && j < m && !deleted[i] && !inserted[j]) {
+                i++;
+                j++;
+                position++;
+                continue;
+            }
+            int nRemovals = 0;
+            int start = j;
+            while (true) {
+                if (i < n && deleted[i]) {
+                    nRemovals++;
+                    i++;
+                } else if (j < m && inserted[j]) {
+                    j++;
+                } else {
+                    break;
+                }
+            }
+            result.add(new Splice<>(position, nRemovals,
+                    copy(newItems, prefix + start, j - start)));
+            position += j - start;
+        }
+        return result;
+    }
+
+    private static <E> List<E> copy(List<? extends E> list, int from, int count) {
+        return new ArrayList<>(list.subList(from, from + count));
+    }
+
+    /*
+     * Myers' O((N+M)D) difference algorithm. Marks the deleted elements of a
+     * and the inserted elements of b. Returns false when the edit distance
+     * exceeds MAX_EDIT_DISTANCE.
+     */
+    private static boolean myers(int[] a, int[] b,
+                                 boolean[] deleted, boolean[] inserted) {
+        int n = a.length, m = b.length;
+        int limit = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int offset = limit + 1;
+        int[] v = new int[2 * limit + 3];
+        int[][] trace = new int[limit + 1][];
+
+        for (int d = 0; d <= limit; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]))
+                        ? v[offset + k + 1]
+                        : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[x] == b[y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    trace[d] = Arrays.copyOfRange(v, offset - d, offset + d + 1);
+                    backtrack(trace, d, n, m, deleted, inserted);
+                    return true;
+                }
+            }
+            // Remember the furthest reaching paths for diagonals -d..d
+            trace[d] = Arrays.copyOfRange(v, offset - d, offset + d + 1);
+        }
+        return false;
+    }
+
+    // Walk back through the trace, and mark the deletions and insertions
+    private static void backtrack(int[][] trace, int dist, int n, int m,
+                                  boolean[] deleted, boolean[] inserted) {
+        int x = n, y = m;
+        for (int d = dist; d > 0; d--) {
+            int[] prev = trace[d - 1]; // diagonals -(d-1)..(d-1)
+            int k = x - y;
+            boolean down = k == -d
+                    || (k != d && prev[k - 1 + d - 1] < prev[k + 1 + d - 1]);
+            int prevK = down ? k + 1 : k - 1;
+            int prevX = prev[prevK + d - 1];
+            int prevY = prevX - prevK;
+            if (down)
+                inserted[prevY] = true;
+            else
+                deleted[prevX] = true;
+            x = prevX;
+            y = prevY;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.gio;
+
+import org.gnome.gobject.GObject;
+
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only list iterator over a {@link ListModelJavaList}.
+ * <p>
+ * For the Java list models in this package ({@link JavaListModel} and
+ * {@link ListIndexModel}), the iterator reads the number of items once, and
+ * fetches the items in blocks. Their modification counter is checked on
+ * every call: when the list has changed, the prefetched items are discarded
+ * and the number of items is read again.
+ * <p>
+ * Other list models (such as {@code GListStore}) can change without a
+ * visible difference in the number of items, so for these models the items
+ * are not prefetched: every item is fetched when it is returned, and the
+ * number of items is read on every call.
+ *
+ * @param <E> the item type
+ */
+final class ListModelIterator<E extends GObject> implements ListIterator<E> {
+
+    // The number of items that is fetched at once
+    static final int BLOCK_SIZE = 32;
+
+    private final ListModelJavaList<E> list;
+    private final ModificationCounter counter; // null for other lists
+    private int expectedModCount;
+    private int size;
+    private int cursor;
+
+    // The prefetched items, from position windowStart (inclusive) to
+    // windowEnd (exclusive)
+    private final Object[] window = new Object[BLOCK_SIZE];
+    private int windowStart = 0;
+    private int windowEnd = 0;
+
+    ListModelIterator(ListModelJavaList<E> list, int index) {
+        this.list = list;
+        this.counter = list instanceof ModificationCounter c ? c : null;
+        this.expectedModCount = counter == null ? 0 : counter.modCount();
+        this.size = list.getNItems();
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException(index);
+        this.cursor = index;
+    }
+
+    /*
+     * When the list has changed, forget the prefetched items and the size.
+     * List models without a modification counter have no prefetched items,
+     * so only the size is read again.
+     */
+    private void sync() {
+        if (counter != null) {
+            int modCount = counter.modCount();
+            if (modCount == expectedModCount)
+                return;
+            expectedModCount = modCount;
+            windowStart = windowEnd = 0;
+        }
+        size = list.getNItems();
+        cursor = Math.min(cursor, size);
+    }
+
+    // Get the item at the position, and prefetch a block of items in the
+    // direction of iteration
+    @SuppressWarnings("unchecked")
+    private E fetch(int position, boolean forward) {
+        if (counter == null)
+            return list.getItem(position);
+
+        if (position < windowStart || position >= windowEnd) {
+            int start = forward ? position
+                    : Math.max(0, position - BLOCK_SIZE + 1);
+            int end = Math.min(size, start + BLOCK_SIZE);
+            for (int i = start; i < end; i++)
+                window[i - start] = list.getItem(i);
+            windowStart = start;
+            windowEnd = end;
+        }
+        return (E) window[position - windowStart];
+    }
+
+    @Override
+    public boolean hasNext() {
+        sync();
+        return cursor < size;
+    }
+
+    @Override
+    public E next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return fetch(cursor++, true);
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        sync();
+        return cursor > 0;
+    }
+
+    @Override
+    public E previous() {
+        if (!hasPrevious())
+            throw new NoSuchElementException();
+        return fetch(--cursor, false);
+    }
+
+    @Override
+    public int nextIndex() {
+        return cursor;
+    }
+
+    @Override
+    public int previousIndex() {
+        return cursor - 1;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void set(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(E e) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -34,6 +34,12 @@ import java.util.ListIterator;
  * regular Java {@link List}. The list is immutable, so all mutations such as
  * {@link #add}, {@link #set} and {@link #remove} throw
  * {@link UnsupportedOperationException}.
+ * <p>
+ * Iterators always return the current items of the list model. For the Java
+ * list models in this package, which count their modifications, iterators
+ * fetch the items in blocks, and discard the prefetched items when the list
+ * has changed. For other list models, every item is fetched when it is
+ * returned.
  *
  * @param <E> The item type must be a GObject.
  */
@@ -65,15 +71,7 @@ public interface ListModelJavaList<E extends GObject> extends List<E> {
      */
     @Override
     default boolean contains(Object o) {
-        if (o == null)
-            return false;
-
-        for (E item : this) {
-            if (o.equals(item))
-                return true;
-        }
-
-        return false;
+        return indexOf(o) >= 0;
     }
 
     /**
@@ -105,8 +103,9 @@ public interface ListModelJavaList<E extends GObject> extends List<E> {
         T[] data = a.length >= size ? a :
                 (T[]) Array.newInstance(a.getClass().getComponentType(), size);
 
-        for (int i = 0; i < size(); i++)
-            data[i] = (T) get(i);
+        var iterator = listIterator();
+        for (int i = 0; i < size && iterator.hasNext(); i++)
+            data[i] = (T) iterator.next();
 
         if (data.length > size)
             data[size] = null;
@@ -217,30 +216,44 @@ public interface ListModelJavaList<E extends GObject> extends List<E> {
 
     /**
      * {@inheritDoc}
+     *
+     * @apiNote A list model only contains GObjects, so for other objects
+     *          (including {@code null}), this returns -1 without reading the
+     *          list. Items are compared by identity first, because the
+     *          instance cache returns the same Java object for the same
+     *          native object.
      */
     @Override
     default int indexOf(Object o) {
-        for (int i = 0; i < size(); i++) {
-            E item = get(i);
-            if (o == null && item == null)
-                return i;
-            if (item.equals(o))
-                return i;
+        if (!(o instanceof GObject))
+            return -1;
+
+        var iterator = listIterator();
+        while (iterator.hasNext()) {
+            int index = iterator.nextIndex();
+            E item = iterator.next();
+            if (item == o || o.equals(item))
+                return index;
         }
         return -1;
     }
 
     /**
      * {@inheritDoc}
+     *
+     * @apiNote See {@link #indexOf(Object)}
      */
     @Override
     default int lastIndexOf(Object o) {
-        for (int i = size() - 1; i >= 0; i--) {
-            E item = get(i);
-            if (o == null && item == null)
-                return i;
-            if (item.equals(o))
-                return i;
+        if (!(o instanceof GObject))
+            return -1;
+
+        var iterator = listIterator(size());
+        while (iterator.hasPrevious()) {
+            int index = iterator.previousIndex();
+            E item = iterator.previous();
+            if (item == o || o.equals(item))
+                return index;
         }
         return -1;
     }
@@ -260,54 +273,7 @@ public interface ListModelJavaList<E extends GObject> extends List<E> {
     @NotNull
     @Override
     default ListIterator<E> listIterator(int index) {
-        return new ListIterator<>() {
-            int next = index;
-
-            @Override
-            public boolean hasNext() {
-                return next < size();
-            }
-
-            @Override
-            public E next() {
-                return get(next++);
-            }
-
-            @Override
-            public boolean hasPrevious() {
-                return next > 0;
-            }
-
-            @Override
-            public E previous() {
-                return get(--next);
-            }
-
-            @Override
-            public int nextIndex() {
-                return next;
-            }
-
-            @Override
-            public int previousIndex() {
-                return next - 1;
-            }
-
-            @Override
-            public void remove() {
-                throw new UnsupportedOperationException();
-            }
-
-            @Override
-            public void set(E e) {
-                throw new UnsupportedOperationException();
-            }
-
-            @Override
-            public void add(E e) {
-                throw new UnsupportedOperationException();
-            }
-        };
+        return new ListModelIterator<>(this, index);
     }
 
     /**
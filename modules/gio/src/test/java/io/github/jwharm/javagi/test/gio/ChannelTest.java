@@ -0,0 +1,66 @@
+package io.github.jwharm.javagi.test.gio;
+
+import io.github.jwharm.javagi.base.GErrorException;
+import io.github.jwharm.javagi.gio.GioChannels;
+import org.gnome.gio.File;
+import org.gnome.gio.FileCreateFlags;
+import org.gnome.gio.Gio;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test NIO channel adapters for GIO streams
+ */
+public class ChannelTest {
+
+    @TempDir
+    public static Path tempDir;
+
+    // Make sure the GIO library is loaded
+    @BeforeAll
+    public static void ensureInitialized() {
+        Gio.javagi$ensureInitialized();
+    }
+
+    @Test
+    public void readAndWriteChannels() throws GErrorException, IOException {
+        File file = File.newForPath(tempDir.resolve("channel.txt").toString());
+        byte[] input = "test string for channels".getBytes(StandardCharsets.UTF_8);
+
+        // Write from a direct buffer
+        try (var channel = GioChannels.newChannel(
+                file.replace(null, false, FileCreateFlags.NONE, null), null)) {
+            var buffer = ByteBuffer.allocateDirect(input.length).put(input).flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+
+        // Read into a heap buffer
+        try (var channel = GioChannels.newChannel(file.read(null), null)) {
+            var buffer = ByteBuffer.allocate(100);
+            while (channel.read(buffer) != -1) {
+                // continue reading until end-of-stream
+            }
+            assertEquals(input.length, buffer.position());
+            assertArrayEquals(input, java.util.Arrays.copyOf(buffer.array(), input.length));
+        }
+
+        // Seek and read into a direct buffer
+        try (var channel = GioChannels.newSeekableChannel(file.read(null), null)) {
+            assertEquals(input.length, channel.size());
+            channel.position(5);
+            var buffer = ByteBuffer.allocateDirect(6);
+            assertEquals(6, channel.read(buffer));
+            buffer.flip();
+            assertEquals("string", StandardCharsets.UTF_8.decode(buffer).toString());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.jwharm.javagi.test.gio;
+
+import io.github.jwharm.javagi.base.GErrorException;
+import io.github.jwharm.javagi.gio.DBusChannel;
+import org.gnome.gio.*;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.*;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test D-Bus calls and signals over a peer-to-peer connection
+ */
+public class DBusChannelTest {
+
+    private static final String PATH = "/io/github/jwharm/javagi/Test";
+    private static final String IFACE = "io.github.jwharm.javagi.Test";
+
+    record Add(int a, int b) {}
+    record Sum(int sum) {}
+    record Changed(String name, long value) {}
+
+    @Test
+    void pipelinedCalls() throws Exception {
+        var pair = connect();
+        try (var server = new DBusChannel(pair.server());
+             var client = new DBusChannel(pair.client())) {
+
+            server.register(PATH, IFACE, "Add", Add.class, args -> new Sum(args.a() + args.b()));
+            server.register(PATH, IFACE, "Fail", Add.class, args -> {
+                throw new IllegalArgumentException("failed");
+            });
+
+            List<CompletableFuture<Sum>> calls = new ArrayList<>();
+            for (int i = 0; i < 1000; i++)
+                calls.add(client.call(null, PATH, IFACE, "Add", new Add(i, 1), Sum.class));
+            for (int i = 0; i < 1000; i++)
+                assertEquals(i + 1, calls.get(i).get(10, TimeUnit.SECONDS).sum());
+
+            var error = client.call(null, PATH, IFACE, "Fail", new Add(0, 0), Void.class);
+            var exception = assertThrows(ExecutionException.class,
+                    () -> error.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(GErrorException.class, exception.getCause());
+        }
+    }
+
+    @Test
+    void signals() throws Exception {
+        var pair = connect();
+        try (var server = new DBusChannel(pair.server());
+             var client = new DBusChannel(pair.client())) {
+
+            var received = new LinkedBlockingQueue<Changed>();
+            var subscription = client.subscribe(IFACE, "Changed", Changed.class,
+                    (path, args) -> {
+                        assertEquals(PATH, path);
+                        received.add(args);
+                    });
+
+            server.emit(null, PATH, IFACE, "Changed", new Changed("size", 42L));
+            assertEquals(new Changed("size", 42L), received.poll(10, TimeUnit.SECONDS));
+
+            subscription.cancel();
+        }
+    }
+
+    record Pair(DBusConnection server, DBusConnection client) {}
+
+    // Create a pair of connected D-Bus connections over a socketpair
+    private static Pair connect() throws Exception {
+        int[] fds = socketpair();
+        var serverStream = SocketConnection.factoryCreateConnection(Socket.fromFd(fds[0]));
+        var clientStream = SocketConnection.factoryCreateConnection(Socket.fromFd(fds[1]));
+        String guid = Gio.dbusGenerateGuid();
+
+        // The server side authenticates the client, so create it on another thread
+        var server = CompletableFuture.supplyAsync(() -> {
+            try {
+                return DBusConnection.sync(serverStream, guid,
+                        Set.of(DBusConnectionFlags.AUTHENTICATION_SERVER,
+                                DBusConnectionFlags.AUTHENTICATION_ALLOW_ANONYMOUS),
+                        null, null);
+            } catch (GErrorException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        var client = DBusConnection.sync(clientStream, null,
+                Set.of(DBusConnectionFlags.AUTHENTICATION_CLIENT), null, null);
+        return new Pair(server.get(10, TimeUnit.SECONDS), client);
+    }
+
+    private static int[] socketpair() {
+        Linker linker = Linker.nativeLinker();
+        MethodHandle socketpair = linker.downcallHandle(
+                linker.defaultLookup().find("socketpair").orElseThrow(),
+                FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT,
+                        ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
+        try (var arena = Arena.ofConfined()) {
+            MemorySegment fds = arena.allocate(ValueLayout.JAVA_INT, 2);
+            // AF_UNIX, SOCK_STREAM
+            int result = (int) socketpair.invokeExact(1, 1, 0, fds);
+            assertEquals(0, result);
+            return fds.toArray(ValueLayout.JAVA_INT);
+        } catch (Throwable t) {
+            throw new AssertionError(t);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.jwharm.javagi.test.gio;
+
+import io.github.jwharm.javagi.gio.DirectoryWalker;
+import io.github.jwharm.javagi.gio.FileEntry;
+import org.gnome.gio.File;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test walking a directory tree in batches
+ */
+public class DirectoryWalkerTest {
+
+    @TempDir
+    public static Path tempDir;
+
+    private static Path createTree(String name) throws Exception {
+        Path root = tempDir.resolve(name);
+        for (int d = 0; d < 5; d++) {
+            Path dir = Files.createDirectories(root.resolve("dir" + d).resolve("sub"));
+            for (int f = 0; f < 20; f++)
+                Files.writeString(dir.resolve("file" + f), "x".repeat(f));
+        }
+        return root;
+    }
+
+    @Test
+    void streamFiles() throws Exception {
+        Path root = createTree("stream");
+        var walker = new DirectoryWalker(File.newForPath(root.toString()), 7, 3);
+        Set<FileEntry> entries;
+        try (var stream = walker.stream()) {
+            entries = stream.collect(Collectors.toSet());
+        }
+
+        // 5 directories, 5 subdirectories and 100 files
+        assertEquals(110, entries.size());
+        assertEquals(10, entries.stream().filter(FileEntry::isDirectory).count());
+
+        var file = entries.stream()
+                .filter(e -> e.path().equals(root.resolve("dir3/sub/file12").toString()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals("file12", file.name());
+        assertEquals(12, file.size());
+        assertTrue(file.modified() > 0);
+    }
+
+    @Test
+    void closeEarly() throws Exception {
+        Path root = createTree("close");
+        try (var stream = new DirectoryWalker(File.newForPath(root.toString()), 1, 1).stream()) {
+            assertEquals(3, stream.limit(3).count());
+        }
+    }
+
+    @Test
+    void missingDirectory() {
+        var walker = new DirectoryWalker(File.newForPath(tempDir.resolve("missing").toString()));
+        try (var stream = walker.stream()) {
+            assertThrows(UncheckedIOException.class, stream::count);
+        }
+    }
+
+    @Test
+    void publishFiles() throws Exception {
+        Path root = createTree("publish");
+        var count = new AtomicInteger();
+        var done = new CompletableFuture<Void>();
+        new DirectoryWalker(File.newForPath(root.toString())).publisher()
+                .subscribe(new Flow.Subscriber<>() {
+                    public void onSubscribe(Flow.Subscription s) { s.request(Long.MAX_VALUE); }
+                    public void onNext(FileEntry item) { count.incrementAndGet(); }
+                    public void onError(Throwable t) { done.completeExceptionally(t); }
+                    public void onComplete() { done.complete(null); }
+                });
+        done.get(10, TimeUnit.SECONDS);
+        assertEquals(110, count.get());
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.jwharm.javagi.test.gio;
+
+import org.gnome.gio.File;
+import org.gnome.gio.FileInputStream;
+import org.gnome.glib.GLib;
+import org.gnome.glib.MainContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test the CompletableFuture variants of async functions
+ */
+public class FutureTest {
+
+    @TempDir
+    public static Path tempDir;
+
+    @Test
+    void readFileAsync() throws Exception {
+        Path path = tempDir.resolve("future.txt");
+        Files.writeString(path, "test string");
+        File file = File.newForPath(path.toString());
+
+        CompletableFuture<FileInputStream> future = file.readAsync(GLib.PRIORITY_DEFAULT);
+        var context = MainContext.default_();
+        while (!future.isDone())
+            context.iteration(true);
+
+        try (var stream = future.get()) {
+            byte[] bytes = stream.readBytes(100, null).getData();
+            assertEquals("test string", new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void cancelFuture() {
+        File file = File.newForPath(tempDir.resolve("missing.txt").toString());
+        var future = file.readAsync(GLib.PRIORITY_DEFAULT);
+        assertTrue(future.cancel(true));
+        assertTrue(future.isCancelled());
+
+        // The callback still runs, and the result is discarded
+        var context = MainContext.default_();
+        while (context.pending())
+            context.iteration(false);
+        assertTrue(future.isCancelled());
+    }
+}
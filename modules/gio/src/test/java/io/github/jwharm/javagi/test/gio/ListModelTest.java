@@ -1,12 +1,19 @@
 package io.github.jwharm.javagi.test.gio;
 
+import io.github.jwharm.javagi.gio.JavaListModel;
 import io.github.jwharm.javagi.gio.ListIndexModel;
+import io.github.jwharm.javagi.gio.ListModelDiff;
 import org.gnome.gio.DBusMessage;
 import org.gnome.gio.Gio;
 import org.gnome.gio.ListStore;
+import org.gnome.gobject.GObject;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -43,6 +50,135 @@ public class ListModelTest {
         assertEquals(499500, product);
     }
 
+    @Test
+    public void iterateListModel() {
+        var listIndexModel = ListIndexModel.newInstance(100);
+        var item70 = listIndexModel.get(70);
+        assertEquals(70, listIndexModel.indexOf(item70));
+        assertEquals(70, listIndexModel.lastIndexOf(item70));
+        assertTrue(listIndexModel.contains(item70));
+        assertFalse(listIndexModel.contains("not a GObject"));
+
+        // The iterator is updated when the list model changes
+        var iterator = listIndexModel.iterator();
+        iterator.next();
+        listIndexModel.setSize(10);
+        int count = 1;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        assertEquals(10, count);
+    }
+
+    @Test
+    public void resizeListModel() {
+        var listIndexModel = ListIndexModel.newInstance(1_000_000);
+        var item = listIndexModel.getItem(999_999);
+        assertNotNull(item);
+        assertEquals(999_999, item.getIndex());
+        assertSame(item, listIndexModel.getItem(999_999));
+
+        // Only the removed items are reported
+        int[] changed = new int[3];
+        listIndexModel.onItemsChanged((position, removed, added) -> {
+            changed[0] = position;
+            changed[1] = removed;
+            changed[2] = added;
+        });
+        listIndexModel.setSize(10);
+        assertArrayEquals(new int[] {10, 999_990, 0}, changed);
+        assertNull(listIndexModel.getItem(10));
+        assertEquals(5, listIndexModel.getItem(5).getIndex());
+    }
+
+    @Test
+    public void listIndexIdentity() {
+        var listIndexModel = ListIndexModel.newInstance(10_000);
+        var first = listIndexModel.getItem(0);
+
+        // An item that is in use is returned again, after many other items
+        // were fetched
+        for (int i = 1; i < 10_000; i++)
+            assertEquals(i, listIndexModel.getItem(i).getIndex());
+        assertSame(first, listIndexModel.getItem(0));
+    }
+
+    @Test
+    public void javaListModel() {
+        JavaListModel<ListIndexModel.ListIndex> model =
+                JavaListModel.newInstance(ListIndexModel.ListIndex.getType());
+        assertEquals(ListIndexModel.ListIndex.getType(), model.getItemType());
+
+        int[] signals = new int[1];
+        int[] changed = new int[3];
+        model.onItemsChanged((position, removed, added) -> {
+            signals[0]++;
+            changed[0] = position;
+            changed[1] = removed;
+            changed[2] = added;
+        });
+
+        // Adding many items emits one signal
+        var items = new ArrayList<ListIndexModel.ListIndex>();
+        for (int i = 0; i < 1000; i++)
+            items.add(ListIndexModel.ListIndex.newInstance(i));
+        model.addAll(items);
+        assertEquals(1, signals[0]);
+        assertArrayEquals(new int[] {0, 0, 1000}, changed);
+        assertEquals(1000, model.getNItems());
+        assertSame(items.get(500), model.getItem(500));
+
+        // Only the changed range is reported
+        var replacement = new ArrayList<>(items);
+        replacement.set(10, ListIndexModel.ListIndex.newInstance(-1));
+        model.setAll(replacement);
+        assertEquals(2, signals[0]);
+        assertArrayEquals(new int[] {10, 1, 1}, changed);
+
+        // Remove all odd items
+        assertTrue(model.removeIf(item -> item.getIndex() % 2 != 0));
+        assertEquals(3, signals[0]);
+        assertEquals(499, model.size());
+        assertArrayEquals(new int[] {1, 999, 498}, changed);
+
+        // The predicate is tested once for every item
+        int[] tests = new int[1];
+        assertTrue(model.removeIf(item -> tests[0]++ % 3 == 0));
+        assertEquals(499, tests[0]);
+        assertEquals(332, model.size());
+        assertEquals(4, signals[0]);
+    }
+
+    @Test
+    public void minimalDiff() {
+        var oldItems = new ArrayList<String>();
+        for (int i = 0; i < 100_000; i++)
+            oldItems.add("item" + i);
+
+        var newItems = new ArrayList<>(oldItems);
+        newItems.remove(50_000);
+        newItems.add(70_000, "inserted");
+        newItems.set(10, "changed");
+
+        var splices = ListModelDiff.diff(oldItems, newItems, Function.identity());
+        assertEquals(3, splices.size());
+
+        // Applying the splices results in the new list
+        var result = new ArrayList<>(oldItems);
+        for (var splice : splices) {
+            var range = result.subList(splice.position(),
+                    splice.position() + splice.nRemovals());
+            range.clear();
+            range.addAll(splice.additions());
+        }
+        assertEquals(newItems, result);
+
+        // Unchanged lists result in no splice operations
+        assertTrue(ListModelDiff.diff(List.of("a", "b"), List.of("a", "b"),
+                Function.identity()).isEmpty());
+    }
+
     @Test
     public void createListStore() {
         var listStore = new ListStore<DBusMessage>(DBusMessage.getType());
@@ -51,4 +187,18 @@ public class ListModelTest {
         assertEquals(1, listStore.size());
         assertEquals(item, listStore.getFirst());
     }
+
+    @Test
+    public void iterateChangedListStore() {
+        var listStore = new ListStore<DBusMessage>(DBusMessage.getType());
+        for (int i = 0; i < 10; i++)
+            listStore.append(new DBusMessage());
+
+        // Replace an item that would be inside a prefetched block
+        var iterator = listStore.iterator();
+        iterator.next();
+        var replacement = new DBusMessage();
+        listStore.splice(1, 1, new GObject[] {replacement});
+        assertSame(replacement, iterator.next());
+    }
 }
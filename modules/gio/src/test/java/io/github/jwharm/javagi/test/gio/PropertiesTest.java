@@ -20,6 +20,7 @@
 package io.github.jwharm.javagi.test.gio;
 
 import io.github.jwharm.javagi.gobject.types.Properties;
+import io.github.jwharm.javagi.gobject.types.PropertyHandle;
 
 import org.gnome.gio.Application;
 import org.gnome.gio.ApplicationFlags;
@@ -62,6 +63,21 @@ public class PropertiesTest {
         assertEquals("io.github.jwharm.javagi.test.Application", applicationId);
     }
 
+    @Test
+    public void propertyHandle() {
+        PropertyHandle<String> handle = Properties.getPropertyHandle(
+                Application.getType(), "application-id");
+        assertSame(handle, Properties.getPropertyHandle(
+                Application.class, "application-id"));
+
+        Application app1 = new Application("test.id1", ApplicationFlags.DEFAULT_FLAGS);
+        Application app2 = new Application("test.id2", ApplicationFlags.DEFAULT_FLAGS);
+        handle.set(app1, "my.example.Application1");
+        handle.set(app2, "my.example.Application2");
+        assertEquals("my.example.Application1", handle.get(app1));
+        assertEquals("my.example.Application2", app2.getApplicationId());
+    }
+
     @Test
     public void builder() {
         AtomicBoolean notified = new AtomicBoolean(false);
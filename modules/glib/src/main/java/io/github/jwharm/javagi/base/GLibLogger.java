@@ -20,29 +20,113 @@
 package io.github.jwharm.javagi.base;
 
 import io.github.jwharm.javagi.Constants;
+import io.github.jwharm.javagi.interop.Interop;
 import org.gnome.glib.GLib;
 import org.gnome.glib.LogLevelFlags;
 
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+
 /**
  * Utility class to call {@link GLib#log} for debug purposes.
+ * <p>
+ * Whether debug messages for the "java-gi" log domain are enabled, is checked
+ * once and cached. When debug output is disabled, {@link #debug} returns
+ * immediately, without marshaling the arguments or calling into native code.
+ * Hot code paths can also check {@link #isDebugEnabled()} themselves, to
+ * avoid boxing the arguments. Call {@link #reload()} after the debug
+ * configuration was changed at runtime (for example with
+ * {@code g_log_set_debug_enabled()}).
  */
 public final class GLibLogger {
 
+    static {
+        GLib.javagi$ensureInitialized();
+    }
+
+    // g_log_writer_default_would_drop() is available since GLib 2.68
+    private static final MethodHandle g_log_writer_default_would_drop =
+            Interop.downcallHandle(
+                    "g_log_writer_default_would_drop",
+                    FunctionDescriptor.of(ValueLayout.JAVA_INT,
+                            ValueLayout.JAVA_INT, ValueLayout.ADDRESS),
+                    false);
+
+    private static final MemorySegment LOG_DOMAIN =
+            Arena.global().allocateFrom(Constants.LOG_DOMAIN);
+
+    private static final int UNKNOWN = -1;
+    private static volatile int debugEnabled = UNKNOWN;
+
     // Prevent instantiation
     private GLibLogger() {}
 
+    /**
+     * Check whether debug messages for the "java-gi" log domain are written
+     * by the default GLib log writer. The result is cached until
+     * {@link #reload()} is called.
+     *
+     * @return true when debug messages are enabled
+     */
+    public static boolean isDebugEnabled() {
+        int enabled = debugEnabled;
+        if (enabled == UNKNOWN) {
+            enabled = queryDebugEnabled() ? 1 : 0;
+            debugEnabled = enabled;
+        }
+        return enabled == 1;
+    }
+
+    /**
+     * Clear the cached result of {@link #isDebugEnabled()}, so it will be
+     * checked again on the next debug message.
+     */
+    public static void reload() {
+        debugEnabled = UNKNOWN;
+    }
+
     /**
      * Call {@link GLib#log} with log domain "java-gi" and level
-     * {@link LogLevelFlags#LEVEL_DEBUG}.
+     * {@link LogLevelFlags#LEVEL_DEBUG}. When debug messages are disabled,
+     * this method does nothing.
      *
      * @param message the message format. See the {@code printf()}
      *                documentation
      * @param varargs the parameters to insert into the format string
      */
     public static void debug(String message, Object... varargs) {
+        if (!isDebugEnabled())
+            return;
+
         GLib.log(Constants.LOG_DOMAIN,
                 LogLevelFlags.LEVEL_DEBUG,
                 message,
                 varargs);
     }
+
+    /*
+     * Ask GLib if a debug message would be dropped. On GLib versions before
+     * 2.68, the G_MESSAGES_DEBUG environment variable is parsed instead.
+     */
+    private static boolean queryDebugEnabled() {
+        if (g_log_writer_default_would_drop != null) {
+            try {
+                int drop = (int) g_log_writer_default_would_drop.invokeExact(
+                        LogLevelFlags.LEVEL_DEBUG.getValue(), LOG_DOMAIN);
+                return drop == 0;
+            } catch (Throwable _err) {
+                throw new AssertionError("Unexpected exception occurred: ", _err);
+            }
+        }
+
+        String domains = System.getenv("G_MESSAGES_DEBUG");
+        if (domains == null)
+            return false;
+        return Arrays.stream(domains.split("[ ,]"))
+                .anyMatch(d -> d.equals("all") || d.equals(Constants.LOG_DOMAIN));
+    }
 }
@@ -0,0 +1,97 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 Jan-Willem Harmannij
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.base;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * A mutable holder for {@code int} out-parameters. The value is stored in
+ * native memory, so it can be passed to native functions directly, without
+ * allocating memory or boxing the value on every call. An {@code OutInt}
+ * instance can be reused for multiple calls.
+ * <p>
+ * Methods with {@code int} out-parameters have an overload that accepts
+ * {@code OutInt} instead of {@code Out<Integer>}.
+ */
+public final class OutInt implements Proxy {
+
+    private final MemorySegment segment;
+
+    /**
+     * Create an OutInt object with initial value {@code 0}. The native
+     * memory is allocated with {@link Arena#ofAuto()}.
+     */
+    public OutInt() {
+        this(Arena.ofAuto());
+    }
+
+    /**
+     * Create an OutInt object with initial value {@code 0}, in native
+     * memory that is allocated with the provided allocator.
+     *
+     * @param allocator the allocator for the native memory
+     */
+    public OutInt(SegmentAllocator allocator) {
+        this.segment = allocator.allocate(ValueLayout.JAVA_INT);
+        this.segment.fill((byte) 0);
+    }
+
+    /**
+     * Create an OutInt object and set the initial value. The native memory is
+     * allocated with {@link Arena#ofAuto()}.
+     *
+     * @param value the initial value
+     */
+    public OutInt(int value) {
+        this();
+        set(value);
+    }
+
+    /**
+     * Get the value from the out-parameter.
+     *
+     * @return the value of the out-parameter
+     */
+    public int get() {
+        return segment.get(ValueLayout.JAVA_INT, 0);
+    }
+
+    /**
+     * Set the parameter to the provided value.
+     *
+     * @param value the value to set
+     */
+    public void set(int value) {
+        segment.set(ValueLayout.JAVA_INT, 0, value);
+    }
+
+    /**
+     * Get the native memory segment that contains the value.
+     *
+     * @return the native memory segment
+     */
+    @Override
+    public MemorySegment handle() {
+        return segment;
+    }
+}
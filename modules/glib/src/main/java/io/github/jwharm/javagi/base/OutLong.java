@@ -0,0 +1,97 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 Jan-Willem Harmannij
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.base;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * A mutable holder for {@code long} out-parameters. The value is stored in
+ * native memory, so it can be passed to native functions directly, without
+ * allocating memory or boxing the value on every call. An {@code OutLong}
+ * instance can be reused for multiple calls.
+ * <p>
+ * Methods with {@code long} out-parameters have an overload that accepts
+ * {@code OutLong} instead of {@code Out<Long>}.
+ */
+public final class OutLong implements Proxy {
+
+    private final MemorySegment segment;
+
+    /**
+     * Create an OutLong object with initial value {@code 0}. The native
+     * memory is allocated with {@link Arena#ofAuto()}.
+     */
+    public OutLong() {
+        this(Arena.ofAuto());
+    }
+
+    /**
+     * Create an OutLong object with initial value {@code 0}, in native
+     * memory that is allocated with the provided allocator.
+     *
+     * @param allocator the allocator for the native memory
+     */
+    public OutLong(SegmentAllocator allocator) {
+        this.segment = allocator.allocate(ValueLayout.JAVA_LONG);
+        this.segment.fill((byte) 0);
+    }
+
+    /**
+     * Create an OutLong object and set the initial value. The native memory is
+     * allocated with {@link Arena#ofAuto()}.
+     *
+     * @param value the initial value
+     */
+    public OutLong(long value) {
+        this();
+        set(value);
+    }
+
+    /**
+     * Get the value from the out-parameter.
+     *
+     * @return the value of the out-parameter
+     */
+    public long get() {
+        return segment.get(ValueLayout.JAVA_LONG, 0);
+    }
+
+    /**
+     * Set the parameter to the provided value.
+     *
+     * @param value the value to set
+     */
+    public void set(long value) {
+        segment.set(ValueLayout.JAVA_LONG, 0, value);
+    }
+
+    /**
+     * Get the native memory segment that contains the value.
+     *
+     * @return the native memory segment
+     */
+    @Override
+    public MemorySegment handle() {
+        return segment;
+    }
+}
@@ -0,0 +1,139 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.glib;
+
+import io.github.jwharm.javagi.interop.Interop;
+import org.gnome.glib.GLib;
+import org.gnome.glib.MainContext;
+import org.gnome.glib.Source;
+
+import java.lang.foreign.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A GSource without file descriptors, that is dispatched when its ready time
+ * is reached. All dispatch sources share one GSourceFuncs struct and one
+ * upcall stub. {@link #setReadyTime(long)} is thread-safe, and wakes up the
+ * main context when it is blocked in another thread.
+ */
+final class DispatchSource {
+
+    static {
+        GLib.javagi$ensureInitialized();
+    }
+
+    private static final MethodHandle g_source_new = Interop.downcallHandle(
+            "g_source_new",
+            FunctionDescriptor.of(ValueLayout.ADDRESS,
+                    ValueLayout.ADDRESS, ValueLayout.JAVA_INT),
+            false);
+
+    // Dispatch sources, by the memory address of their GSource
+    private static final Map<Long, DispatchSource> SOURCES =
+            new ConcurrentHashMap<>();
+
+    // The GSourceFuncs struct that is shared by all dispatch sources. Only
+    // the dispatch function is set: the sources are woken up with their
+    // ready time.
+    private static final MemorySegment SOURCE_FUNCS;
+
+    static {
+        try {
+            FunctionDescriptor _fdesc = FunctionDescriptor.of(ValueLayout.JAVA_INT,
+                    ValueLayout.ADDRESS, ValueLayout.ADDRESS, ValueLayout.ADDRESS);
+            MethodHandle _handle = MethodHandles.lookup().findStatic(
+                    DispatchSource.class, "dispatch", _fdesc.toMethodType());
+            MemorySegment dispatch = Linker.nativeLinker().upcallStub(_handle, _fdesc, Arena.global());
+
+            // prepare, check, dispatch, finalize, closure_callback, closure_marshal
+            SOURCE_FUNCS = Arena.global().allocate(ValueLayout.ADDRESS, 6);
+            SOURCE_FUNCS.setAtIndex(ValueLayout.ADDRESS, 2, dispatch);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private final Source source;
+    private final BooleanSupplier callback;
+
+    /**
+     * Create a dispatch source and attach it to the main context. The source
+     * is not ready until {@link #setReadyTime(long)} is called.
+     *
+     * @param context  the main context, or {@code null} for the global
+     *                 default main context
+     * @param priority the priority of the source
+     * @param name     the name of the source, for debugging
+     * @param callback called when the source is ready, returns {@code false}
+     *                 to destroy the source
+     */
+    DispatchSource(MainContext context, int priority, String name,
+                   BooleanSupplier callback) {
+        this.callback = callback;
+        try {
+            MemorySegment handle = (MemorySegment) g_source_new.invokeExact(
+                    SOURCE_FUNCS, (int) Source.getMemoryLayout().byteSize());
+            this.source = new Source(handle);
+        } catch (Throwable _err) {
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        }
+
+        SOURCES.put(source.handle().address(), this);
+        source.setPriority(priority);
+        source.setName(name);
+        source.setReadyTime(-1);
+        source.attach(context);
+    }
+
+    /**
+     * Set the monotonic time at which the source will be dispatched: 0 to
+     * dispatch it in the next main loop iteration, or -1 to never dispatch
+     * it. The ready time is not reset when the source is dispatched.
+     *
+     * @param readyTime the monotonic time in microseconds
+     */
+    void setReadyTime(long readyTime) {
+        source.setReadyTime(readyTime);
+    }
+
+    /**
+     * Destroy the source and release the reference.
+     */
+    void destroy() {
+        SOURCES.remove(source.handle().address());
+        source.destroy();
+        source.unref();
+    }
+
+    /*
+     * Called by native code when a source is ready.
+     */
+    private static int dispatch(MemorySegment source,
+                                MemorySegment callback,
+                                MemorySegment userData) {
+        var dispatchSource = SOURCES.get(source.address());
+        return dispatchSource != null
+                && dispatchSource.callback.getAsBoolean() ? 1 : 0;
+    }
+}
@@ -0,0 +1,332 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.glib;
+
+import org.gnome.glib.GLib;
+import org.gnome.glib.MainContext;
+import org.gnome.glib.Source;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An {@link ScheduledExecutorService} that runs tasks on a GLib
+ * {@link MainContext}.
+ * <p>
+ * Submitted tasks are added to a lock-free queue. The queue is drained by a
+ * single {@link Source} that is attached to the main context once, when the
+ * executor is created. The source is woken up once per batch of tasks: when
+ * many tasks are submitted before the main context gets to run them, only
+ * the first task wakes up the main context. Submitting a task does not
+ * allocate native memory or create an upcall stub.
+ * <p>
+ * To keep the main context responsive, the source stops running tasks when
+ * the time budget for one main loop iteration has been used, and continues
+ * in the next iteration.
+ * <p>
+ * Delayed and periodic tasks are ordered by their deadline on the monotonic
+ * clock ({@link GLib#getMonotonicTime()}), and the ready time of the source
+ * is set to the earliest deadline.
+ * <p>
+ * When the executor is shut down, tasks that were already submitted are
+ * still run, but delayed and periodic tasks are cancelled. After the
+ * executor has terminated, the source is destroyed.
+ */
+public class MainContextExecutor extends AbstractExecutorService
+        implements ScheduledExecutorService {
+
+    static {
+        GLib.javagi$ensureInitialized();
+    }
+
+    // The default time budget per main loop iteration
+    private static final Duration DEFAULT_BUDGET = Duration.ofMillis(5);
+
+    private final DispatchSource source;
+    private final long budget;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final PriorityBlockingQueue<ScheduledTask<?>> scheduled =
+            new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicBoolean awake = new AtomicBoolean(false);
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean shutdown = false;
+
+    /**
+     * Create an executor that runs tasks on the provided main context, with
+     * the default priority and a time budget of 5 milliseconds per main loop
+     * iteration.
+     *
+     * @param context the main context, or {@code null} for the global default
+     *                main context
+     */
+    public MainContextExecutor(MainContext context) {
+        this(context, GLib.PRIORITY_DEFAULT, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Create an executor that runs tasks on the provided main context.
+     *
+     * @param context  the main context, or {@code null} for the global default
+     *                 main context
+     * @param priority the priority of the source that runs the tasks, for
+     *                 example {@link GLib#PRIORITY_DEFAULT_IDLE}
+     * @param budget   the maximum time to run tasks in one main loop iteration
+     */
+    public MainContextExecutor(MainContext context, int priority, Duration budget) {
+        requireNonNull(budget);
+        if (budget.isNegative() || budget.isZero())
+            throw new IllegalArgumentException("Budget must be positive");
+        this.budget = budget.toNanos();
+        this.source = new DispatchSource(context, priority,
+                "java-gi executor", this::runTasks);
+    }
+
+    /**
+     * Run the task on the main context.
+     *
+     * @param  command the task to run
+     * @throws RejectedExecutionException if the executor has been shut down
+     */
+    @Override
+    public void execute(Runnable command) {
+        requireNonNull(command);
+        if (shutdown)
+            throw new RejectedExecutionException("Executor has been shut down");
+        tasks.offer(command);
+        wakeup();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        requireNonNull(command);
+        return schedule(new ScheduledTask<>(Executors.callable(command, null),
+                deadline(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        requireNonNull(callable);
+        return schedule(new ScheduledTask<>(callable, deadline(delay, unit), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay,
+                                                  long period, TimeUnit unit) {
+        requireNonNull(command);
+        if (period <= 0)
+            throw new IllegalArgumentException("Period must be positive");
+        return schedule(new ScheduledTask<>(Executors.callable(command, null),
+                deadline(initialDelay, unit), Math.max(1, unit.toMicros(period))));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay,
+                                                     long delay, TimeUnit unit) {
+        requireNonNull(command);
+        if (delay <= 0)
+            throw new IllegalArgumentException("Delay must be positive");
+        return schedule(new ScheduledTask<>(Executors.callable(command, null),
+                deadline(initialDelay, unit), -Math.max(1, unit.toMicros(delay))));
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        wakeup();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> pending = new ArrayList<>();
+        for (Runnable task; (task = tasks.poll()) != null; )
+            pending.add(task);
+        wakeup();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    // Add a delayed task, and wake up the source when it is the first one
+    private <V> ScheduledFuture<V> schedule(ScheduledTask<V> task) {
+        if (shutdown)
+            throw new RejectedExecutionException("Executor has been shut down");
+        scheduled.offer(task);
+        if (scheduled.peek() == task)
+            wakeup();
+        return task;
+    }
+
+    // Calculate the deadline on the monotonic clock, in microseconds
+    private static long deadline(long delay, TimeUnit unit) {
+        return GLib.getMonotonicTime() + Math.max(0, unit.toMicros(delay));
+    }
+
+    // Wake up the source once per batch. This is thread-safe, and wakes up
+    // the main context when it is blocked in another thread.
+    private void wakeup() {
+        if (awake.compareAndSet(false, true))
+            source.setReadyTime(0);
+    }
+
+    // Run tasks until the queue is empty or the time budget is used. Returns
+    // false when the executor has terminated.
+    private boolean runTasks() {
+        // Reset the ready time before the flag, so a wakeup from another
+        // thread in between is not overwritten
+        source.setReadyTime(-1);
+        awake.set(false);
+
+        // Move delayed tasks that are due into the queue
+        long now = GLib.getMonotonicTime();
+        for (ScheduledTask<?> task; (task = scheduled.peek()) != null
+                && task.deadline <= now; ) {
+            if (scheduled.remove(task))
+                tasks.offer(task);
+        }
+
+        long start = System.nanoTime();
+        for (Runnable task; (task = tasks.poll()) != null; ) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                var thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            }
+            if (System.nanoTime() - start >= budget)
+                break;
+        }
+
+        // After shutdown, cancel the delayed tasks and terminate when the
+        // queue is empty
+        if (shutdown) {
+            for (ScheduledTask<?> task; (task = scheduled.poll()) != null; )
+                task.cancel(false);
+            if (tasks.isEmpty()) {
+                terminate();
+                return false;
+            }
+        }
+
+        // Continue in the next iteration, or sleep until the next deadline
+        if (!tasks.isEmpty()) {
+            awake.set(true);
+            source.setReadyTime(0);
+        } else {
+            ScheduledTask<?> next = scheduled.peek();
+            source.setReadyTime(next == null ? -1 : next.deadline);
+            // A task may have been added after the ready time was reset
+            if (awake.get() || !tasks.isEmpty())
+                source.setReadyTime(0);
+        }
+        return true;
+    }
+
+    // Destroy the source and release the reference. The executor stays
+    // "awake", so the source is not woken up anymore.
+    private void terminate() {
+        awake.set(true);
+        source.destroy();
+        terminated.countDown();
+    }
+
+    /*
+     * A delayed or periodic task. A positive period is a fixed rate, a
+     * negative period is a fixed delay (both in microseconds).
+     */
+    private class ScheduledTask<V> extends FutureTask<V>
+            implements RunnableScheduledFuture<V> {
+
+        private final long seq = sequence.getAndIncrement();
+        private final long period;
+        private volatile long deadline;
+
+        ScheduledTask(Callable<V> callable, long deadline, long period) {
+            super(callable);
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - GLib.getMonotonicTime(),
+                    TimeUnit.MICROSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this)
+                return 0;
+            if (other instanceof ScheduledTask<?> task) {
+                int result = Long.compare(deadline, task.deadline);
+                return result != 0 ? result : Long.compare(seq, task.seq);
+            }
+            return Long.compare(getDelay(TimeUnit.MICROSECONDS),
+                    other.getDelay(TimeUnit.MICROSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled)
+                scheduled.remove(this);
+            return cancelled;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (runAndReset() && !shutdown) {
+                deadline = period > 0
+                        ? deadline + period
+                        : GLib.getMonotonicTime() - period;
+                scheduled.offer(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.glib;
+
+import org.gnome.glib.GLib;
+import org.gnome.glib.MainContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A hierarchical timer wheel that runs timers on a GLib
+ * {@link MainContext}.
+ * <p>
+ * Timers are kept in Java, in 4 levels of 64 slots. Every slot is a linked
+ * list, so scheduling and cancelling a timer take constant time. The wheel
+ * uses one native source, that is armed for the next deadline (or the next
+ * time a slot of a higher level must be redistributed into the lower
+ * levels). Scheduling a timer does not create a native source or an upcall
+ * stub.
+ * <p>
+ * The deadlines are rounded up to a tick (1 millisecond by default) on the
+ * monotonic clock ({@link GLib#getMonotonicTime()}). A timer can specify a
+ * slack: its deadline is then moved to a "round" tick within the slack, so
+ * timers with nearby deadlines fire in the same main loop iteration.
+ * <p>
+ * Timers can be scheduled and cancelled from any thread. They always run on
+ * the thread that iterates the main context.
+ */
+public final class TimerWheel implements AutoCloseable {
+
+    static {
+        GLib.javagi$ensureInitialized();
+    }
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final long SLOT_MASK = SLOTS - 1;
+
+    // Timers with a later deadline are placed in the last slot of the
+    // highest level, and redistributed when that slot is reached
+    private static final long MAX_DELTA = (1L << (LEVELS * SLOT_BITS)) - 1;
+
+    private final DispatchSource source;
+    private final long tickMicros;
+
+    // The first timer in each slot, and a bitmap of the non-empty slots
+    private final Timer[][] slots = new Timer[LEVELS][SLOTS];
+    private final long[] occupied = new long[LEVELS];
+
+    private long current;
+    private long armed = -1;
+    private int size = 0;
+    private boolean closed = false;
+
+    /**
+     * Create a timer wheel on the provided main context, with the default
+     * priority and a tick of 1 millisecond.
+     *
+     * @param context the main context, or {@code null} for the global default
+     *                main context
+     */
+    public TimerWheel(MainContext context) {
+        this(context, GLib.PRIORITY_DEFAULT, Duration.ofMillis(1));
+    }
+
+    /**
+     * Create a timer wheel on the provided main context.
+     *
+     * @param context  the main context, or {@code null} for the global default
+     *                 main context
+     * @param priority the priority of the source that runs the timers
+     * @param tick     the resolution of the timer deadlines
+     */
+    public TimerWheel(MainContext context, int priority, Duration tick) {
+        requireNonNull(tick);
+        this.tickMicros = tick.toNanos() / 1000;
+        if (tickMicros <= 0)
+            throw new IllegalArgumentException("Tick must be at least 1 microsecond");
+        this.current = GLib.getMonotonicTime() / tickMicros;
+        this.source = new DispatchSource(context, priority,
+                "java-gi timer wheel", this::dispatch);
+    }
+
+    /**
+     * Schedule a task to run on the main context after the provided delay.
+     *
+     * @param  task  the task to run
+     * @param  delay the delay
+     * @return a timer that can be cancelled
+     * @throws IllegalStateException if the timer wheel is closed
+     */
+    public Timer schedule(Runnable task, Duration delay) {
+        return schedule(task, delay, Duration.ZERO);
+    }
+
+    /**
+     * Schedule a task to run on the main context after the provided delay.
+     * The task may run up to {@code slack} later, so it can be coalesced
+     * with other timers.
+     *
+     * @param  task  the task to run
+     * @param  delay the delay
+     * @param  slack the maximum additional delay
+     * @return a timer that can be cancelled
+     * @throws IllegalStateException if the timer wheel is closed
+     */
+    public Timer schedule(Runnable task, Duration delay, Duration slack) {
+        requireNonNull(task);
+        requireNonNull(delay);
+        requireNonNull(slack);
+
+        long deadline = GLib.getMonotonicTime() + Math.max(0, delay.toNanos() / 1000);
+        long expires = Math.ceilDiv(deadline, tickMicros);
+        long slackTicks = slack.toNanos() / 1000 / tickMicros;
+        if (slackTicks > 0)
+            expires = applySlack(expires, slackTicks);
+
+        var timer = new Timer(task);
+        synchronized (this) {
+            if (closed)
+                throw new IllegalStateException("Timer wheel is closed");
+            timer.expires = Math.max(expires, current + 1);
+            insert(timer);
+            size++;
+            arm(false);
+        }
+        return timer;
+    }
+
+    /**
+     * Get the number of pending timers.
+     *
+     * @return the number of timers that have not yet run or been cancelled
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Cancel all pending timers and destroy the native source.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                for (Timer t = slots[level][slot]; t != null; t = t.next)
+                    t.pending = false;
+                slots[level][slot] = null;
+            }
+            occupied[level] = 0;
+        }
+        size = 0;
+        source.destroy();
+    }
+
+    /*
+     * Move the deadline to the tick within the slack with the most trailing
+     * zero bits, so nearby deadlines end up on the same tick.
+     */
+    private static long applySlack(long expires, long slackTicks) {
+        long limit = expires + slackTicks;
+        long diff = expires ^ limit;
+        if (diff == 0)
+            return expires;
+        int bit = 63 - Long.numberOfLeadingZeros(diff);
+        return limit & ~((1L << bit) - 1);
+    }
+
+    // Called when the source is ready: run the expired timers
+    private boolean dispatch() {
+        List<Timer> expired = new ArrayList<>();
+        synchronized (this) {
+            if (closed)
+                return false;
+            advance(GLib.getMonotonicTime() / tickMicros, expired);
+            arm(true);
+        }
+
+        for (Timer timer : expired) {
+            try {
+                timer.task.run();
+            } catch (Throwable t) {
+                var thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            }
+        }
+        return true;
+    }
+
+    // Process all ticks up to and including the target tick
+    private void advance(long target, List<Timer> expired) {
+        while (current < target) {
+            long next = nextEventTick();
+            if (next > target) {
+                current = target;
+                return;
+            }
+            current = next;
+
+            // Redistribute the slots of the higher levels that start at
+            // this tick
+            for (int level = 1; level < LEVELS; level++) {
+                int shift = level * SLOT_BITS;
+                if ((current & ((1L << shift) - 1)) != 0)
+                    break;
+                cascade(level, (int) ((current >> shift) & SLOT_MASK));
+            }
+
+            // Expire the timers in the current slot of the lowest level
+            int slot = (int) (current & SLOT_MASK);
+            Timer timer = slots[0][slot];
+            slots[0][slot] = null;
+            occupied[0] &= ~(1L << slot);
+            while (timer != null) {
+                Timer following = timer.next;
+                timer.prev = timer.next = null;
+                timer.pending = false;
+                expired.add(timer);
+                size--;
+                timer = following;
+            }
+        }
+    }
+
+    // Re-insert the timers in a slot, relative to the current tick
+    private void cascade(int level, int slot) {
+        Timer timer = slots[level][slot];
+        slots[level][slot] = null;
+        occupied[level] &= ~(1L << slot);
+        while (timer != null) {
+            Timer next = timer.next;
+            timer.prev = timer.next = null;
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    /*
+     * Find the next tick at which a timer expires, or at which a non-empty
+     * slot of a higher level must be redistributed. Returns Long.MAX_VALUE
+     * when there are no timers.
+     */
+    private long nextEventTick() {
+        long result = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            if (occupied[level] == 0)
+                continue;
+            int shift = level * SLOT_BITS;
+            long base = (current >> shift) + 1;
+            long rotated = Long.rotateRight(occupied[level], (int) (base & SLOT_MASK));
+            long tick = (base + Long.numberOfTrailingZeros(rotated)) << shift;
+            result = Math.min(result, tick);
+        }
+        return result;
+    }
+
+    // Set the ready time of the source to the next event tick
+    private void arm(boolean force) {
+        long next = nextEventTick();
+        long readyTime = next == Long.MAX_VALUE ? -1 : next * tickMicros;
+        if (force || readyTime != armed) {
+            armed = readyTime;
+            source.setReadyTime(readyTime);
+        }
+    }
+
+    // Add the timer to the slot for its deadline
+    private void insert(Timer timer) {
+        long delta = timer.expires - current;
+        int level;
+        long placement;
+        if (delta < SLOTS) {
+            level = 0;
+            placement = Math.max(timer.expires, current);
+        } else {
+            placement = delta > MAX_DELTA ? current + MAX_DELTA : timer.expires;
+            level = (63 - Long.numberOfLeadingZeros(placement - current)) / SLOT_BITS;
+        }
+        int slot = (int) ((placement >> (level * SLOT_BITS)) & SLOT_MASK);
+
+        Timer head = slots[level][slot];
+        timer.next = head;
+        if (head != null)
+            head.prev = timer;
+        slots[level][slot] = timer;
+        occupied[level] |= 1L << slot;
+        timer.level = level;
+        timer.slot = slot;
+        timer.pending = true;
+    }
+
+    // Remove the timer from its slot
+    private void unlink(Timer timer) {
+        if (timer.prev != null)
+            timer.prev.next = timer.next;
+        else
+            slots[timer.level][timer.slot] = timer.next;
+        if (timer.next != null)
+            timer.next.prev = timer.prev;
+        if (slots[timer.level][timer.slot] == null)
+            occupied[timer.level] &= ~(1L << timer.slot);
+        timer.prev = timer.next = null;
+        timer.pending = false;
+    }
+
+    /**
+     * A timer that has been scheduled on a {@link TimerWheel}.
+     */
+    public final class Timer {
+
+        private final Runnable task;
+        private long expires;
+        private int level;
+        private int slot;
+        private Timer prev;
+        private Timer next;
+        private boolean pending;
+
+        private Timer(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Cancel the timer. This takes constant time. The native source is
+         * not re-armed; when it wakes up for the cancelled timer, it is armed
+         * for the next deadline.
+         *
+         * @return {@code true} if the timer was cancelled, {@code false} if it
+         *         already ran or was already cancelled
+         */
+        public boolean cancel() {
+            synchronized (TimerWheel.this) {
+                if (!pending)
+                    return false;
+                unlink(this);
+                size--;
+                return true;
+            }
+        }
+
+        /**
+         * Check whether the timer is still pending.
+         *
+         * @return {@code true} if the timer has not yet run and has not been
+         *         cancelled
+         */
+        public boolean isPending() {
+            synchronized (TimerWheel.this) {
+                return pending;
+            }
+        }
+    }
+}
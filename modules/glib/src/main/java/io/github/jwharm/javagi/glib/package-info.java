@@ -0,0 +1,4 @@
+/**
+ * Java-GI helper classes used by the GLib bindings.
+ */
+package io.github.jwharm.javagi.glib;
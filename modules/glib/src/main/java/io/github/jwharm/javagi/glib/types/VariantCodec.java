@@ -0,0 +1,1007 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.glib.types;
+
+import io.github.jwharm.javagi.interop.Interop;
+import io.github.jwharm.javagi.interop.MemoryCleaner;
+import org.gnome.glib.Bytes;
+import org.gnome.glib.GLib;
+import org.gnome.glib.Variant;
+import org.gnome.glib.VariantType;
+
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.lang.ref.Reference;
+import java.lang.reflect.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static io.github.jwharm.javagi.glib.types.VariantTypeInfo.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Converts Java values to and from GVariants, by reading and writing the
+ * GVariant serialization format directly.
+ * <p>
+ * A codec is derived once per Java class, and cached. The GVariant type is
+ * derived from the Java type:
+ * <ul>
+ * <li>{@code boolean}, {@code byte}, {@code short}, {@code int},
+ *     {@code long} and {@code double} (and their boxed types) map to
+ *     {@code b}, {@code y}, {@code n}, {@code i}, {@code x} and {@code d}
+ * <li>{@code String} maps to {@code s}
+ * <li>{@code byte[]} maps to {@code ay}
+ * <li>Other arrays and {@code List<E>} map to an array of the element type
+ * <li>{@code Map<K, V>} maps to a dictionary {@code a{KV}}
+ * <li>{@code Optional<E>} maps to a maybe type {@code mE}
+ * <li>Records map to a tuple of their components
+ * <li>{@link Variant} and {@code Object} map to {@code v}. When an
+ *     {@code Object} is serialized, the GVariant type is derived from its
+ *     runtime class, or for Lists, Maps and Optionals, from their contents.
+ * </ul>
+ * The type of a record component can be overridden with the
+ * {@link VariantTypeString} annotation, for example for unsigned integers,
+ * object paths and signatures.
+ * <p>
+ * {@link #encode(Object)} writes the serialized data into one native buffer,
+ * that is used by the new GVariant without copying it.
+ * {@link #decode(Variant)} reads the serialized data of the GVariant without
+ * creating intermediate GVariant instances.
+ *
+ * @param <T> the Java type
+ */
+public final class VariantCodec<T> {
+
+    static {
+        GLib.javagi$ensureInitialized();
+    }
+
+    private static final MethodHandle g_malloc = Interop.downcallHandle(
+            "g_malloc",
+            FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.JAVA_LONG),
+            false);
+
+    private static final MethodHandle g_realloc = Interop.downcallHandle(
+            "g_realloc",
+            FunctionDescriptor.of(ValueLayout.ADDRESS,
+                    ValueLayout.ADDRESS, ValueLayout.JAVA_LONG),
+            false);
+
+    private static final MethodHandle g_free = Interop.downcallHandle(
+            "g_free",
+            FunctionDescriptor.ofVoid(ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_bytes_new_take = Interop.downcallHandle(
+            "g_bytes_new_take",
+            FunctionDescriptor.of(ValueLayout.ADDRESS,
+                    ValueLayout.ADDRESS, ValueLayout.JAVA_LONG),
+            false);
+
+    private static final MethodHandle g_variant_get_data = Interop.downcallHandle(
+            "g_variant_get_data",
+            FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_variant_get_size = Interop.downcallHandle(
+            "g_variant_get_size",
+            FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.ADDRESS),
+            false);
+
+    private static final ClassValue<VariantCodec<?>> CODECS = new ClassValue<>() {
+        @Override
+        protected VariantCodec<?> computeValue(Class<?> type) {
+            return new VariantCodec<>(formatFor(type, null));
+        }
+    };
+
+    // Formats for GVariant type strings, used for "v" values
+    private static final Map<String, Format> TYPE_STRING_FORMATS =
+            new ConcurrentHashMap<>();
+
+    private final Format format;
+    private final VariantType variantType;
+
+    private VariantCodec(Format format) {
+        this.format = format;
+        this.variantType = new VariantType(format.typeString);
+    }
+
+    /**
+     * Get the (cached) codec for the provided Java class.
+     *
+     * @param  type the Java class
+     * @param  <T>  the Java type
+     * @return the codec
+     * @throws IllegalArgumentException if the class (or one of its record
+     *                                  components) cannot be mapped to a
+     *                                  GVariant type
+     */
+    @SuppressWarnings("unchecked") // the codec was created for this class
+    public static <T> VariantCodec<T> of(Class<T> type) {
+        return (VariantCodec<T>) CODECS.get(requireNonNull(type));
+    }
+
+    /**
+     * Get the GVariant type string of this codec, for example
+     * {@code "(sia{sv})"}.
+     *
+     * @return the GVariant type string
+     */
+    public String typeString() {
+        return format.typeString;
+    }
+
+    /**
+     * Get the GVariant type of this codec.
+     *
+     * @return the GVariant type
+     */
+    public VariantType variantType() {
+        return variantType;
+    }
+
+    /**
+     * Serialize a Java value into a new GVariant.
+     *
+     * @param  value the value to serialize
+     * @return a new GVariant
+     * @throws IllegalArgumentException if the value contains a null value,
+     *                                  a string with a NUL character, or an
+     *                                  object of an unsupported class
+     */
+    public Variant encode(T value) {
+        requireNonNull(value);
+        var writer = new Writer();
+        MemorySegment handle;
+        try {
+            format.write(writer, value);
+            handle = writer.take();
+        } catch (RuntimeException e) {
+            writer.free();
+            throw e;
+        }
+        var bytes = new Bytes(handle);
+        MemoryCleaner.takeOwnership(bytes);
+        MemoryCleaner.setBoxedType(bytes, Bytes.getType());
+        return Variant.fromBytes(variantType, bytes, false);
+    }
+
+    /**
+     * Deserialize a GVariant into a Java value.
+     *
+     * @param  variant the GVariant to deserialize
+     * @return the Java value
+     * @throws IllegalArgumentException if the GVariant does not have the type
+     *                                  of this codec, or the serialized data
+     *                                  is invalid
+     */
+    @SuppressWarnings("unchecked") // the format was created for this class
+    public T decode(Variant variant) {
+        requireNonNull(variant);
+        String typeString = variant.getTypeString();
+        if (!format.typeString.equals(typeString))
+            throw new IllegalArgumentException("Expected GVariant type %s, found %s"
+                    .formatted(format.typeString, typeString));
+        try {
+            return (T) format.read(serializedData(variant));
+        } finally {
+            Reference.reachabilityFence(variant);
+        }
+    }
+
+    // Get the serialized data of a GVariant. The data is owned by the
+    // GVariant.
+    private static MemorySegment serializedData(Variant variant) {
+        try {
+            long size = (long) g_variant_get_size.invokeExact(variant.handle());
+            MemorySegment data = (MemorySegment) g_variant_get_data.invokeExact(variant.handle());
+            return size == 0 ? MemorySegment.NULL : data.reinterpret(size);
+        } catch (Throwable _err) {
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        }
+    }
+
+    /*
+     * Derive the format for a Java type. The type string is null, or
+     * overrides the default type string for the Java type.
+     */
+    private static Format formatFor(Type type, String typeString) {
+        Class<?> raw = switch (type) {
+            case Class<?> cls -> cls;
+            case ParameterizedType pt -> (Class<?>) pt.getRawType();
+            case GenericArrayType gat -> Object[].class;
+            default -> throw unsupported(type);
+        };
+
+        if (raw == Object.class || raw == Variant.class) {
+            check(typeString, "v", type);
+            return new VariantFormat(raw == Object.class);
+        }
+
+        if (raw.isPrimitive() || BasicFormat.isBoxed(raw)) {
+            var format = BasicFormat.of(raw, typeString);
+            if (format == null)
+                throw unsupported(type);
+            return format;
+        }
+
+        if (raw == String.class) {
+            String ts = typeString == null ? "s" : typeString;
+            if (!List.of("s", "o", "g").contains(ts))
+                throw unsupported(type);
+            return new StringFormat(ts);
+        }
+
+        if (raw == byte[].class && (typeString == null || typeString.equals("ay")))
+            return new ByteArrayFormat();
+
+        if (raw.isArray() || raw == List.class || raw == Collection.class) {
+            Type elementType = switch (type) {
+                case Class<?> cls -> cls.getComponentType();
+                case GenericArrayType gat -> gat.getGenericComponentType();
+                default -> typeArgument(type, 0);
+            };
+            if (typeString != null && !typeString.startsWith("a"))
+                throw unsupported(type);
+            var element = formatFor(elementType, typeString == null ? null : typeString.substring(1));
+            Class<?> componentType = raw.isArray() ? raw.getComponentType() : null;
+            return new ArrayFormat(element, componentType);
+        }
+
+        if (raw == Map.class) {
+            String keyType = null, valueType = null;
+            if (typeString != null) {
+                if (!typeString.startsWith("a{") || !typeString.endsWith("}"))
+                    throw unsupported(type);
+                keyType = typeString.substring(2, 3);
+                valueType = typeString.substring(3, typeString.length() - 1);
+            }
+            var key = formatFor(typeArgument(type, 0), keyType);
+            var value = formatFor(typeArgument(type, 1), valueType);
+            return ArrayFormat.dictionary(key, value);
+        }
+
+        if (raw == Optional.class) {
+            if (typeString != null && !typeString.startsWith("m"))
+                throw unsupported(type);
+            return new MaybeFormat(formatFor(typeArgument(type, 0),
+                    typeString == null ? null : typeString.substring(1)));
+        }
+
+        if (raw.isRecord()) {
+            var format = TupleFormat.record(raw);
+            check(typeString, format.typeString, type);
+            return format;
+        }
+
+        throw unsupported(type);
+    }
+
+    // Derive the format for a GVariant type string, with default Java types
+    private static Format formatFor(String typeString) {
+        var format = TYPE_STRING_FORMATS.get(typeString);
+        if (format == null) {
+            int[] pos = {0};
+            format = parse(typeString, pos);
+            if (pos[0] != typeString.length())
+                throw new IllegalArgumentException("Invalid GVariant type string: " + typeString);
+            TYPE_STRING_FORMATS.put(typeString, format);
+        }
+        return format;
+    }
+
+    private static Format parse(String typeString, int[] pos) {
+        if (pos[0] >= typeString.length())
+            throw new IllegalArgumentException("Invalid GVariant type string: " + typeString);
+        char c = typeString.charAt(pos[0]++);
+        return switch (c) {
+            case 'b', 'y', 'n', 'q', 'i', 'u', 'x', 't', 'h', 'd' -> BasicFormat.of(c);
+            case 's', 'o', 'g' -> new StringFormat(String.valueOf(c));
+            case 'v' -> new VariantFormat(true);
+            case 'm' -> new MaybeFormat(parse(typeString, pos));
+            case 'a' -> {
+                if (typeString.startsWith("y", pos[0])) {
+                    pos[0]++;
+                    yield new ByteArrayFormat();
+                }
+                if (typeString.startsWith("{", pos[0])) {
+                    pos[0]++;
+                    var key = parse(typeString, pos);
+                    var value = parse(typeString, pos);
+                    if (!typeString.startsWith("}", pos[0]++))
+                        throw new IllegalArgumentException("Invalid GVariant type string: " + typeString);
+                    yield ArrayFormat.dictionary(key, value);
+                }
+                yield new ArrayFormat(parse(typeString, pos), null);
+            }
+            case '(' -> {
+                List<Format> members = new ArrayList<>();
+                while (!typeString.startsWith(")", pos[0]))
+                    members.add(parse(typeString, pos));
+                pos[0]++;
+                yield TupleFormat.array(members);
+            }
+            default -> throw new IllegalArgumentException("Unsupported GVariant type string: " + typeString);
+        };
+    }
+
+    /*
+     * Derive the format for the runtime class of a value inside a "v". This
+     * includes the Java types that are returned when a "v" is decoded: Lists,
+     * Maps, Optionals and Object arrays (tuples) get the type of their
+     * contents. The elements of a List are written as variants when they
+     * have different types. The values of a Map are always written as
+     * variants, like the common "a{sv}" dictionaries. An empty List, Map or
+     * Optional is written as "av", "a{sv}" or "mv".
+     */
+    private static Format formatForValue(Object value) {
+        if (value instanceof Boolean || value instanceof Byte
+                || value instanceof Short || value instanceof Integer
+                || value instanceof Long || value instanceof Double)
+            return BasicFormat.of(value.getClass(), null);
+        if (value instanceof String)
+            return new StringFormat("s");
+        if (value instanceof byte[])
+            return new ByteArrayFormat();
+        if (value instanceof Variant)
+            return new VariantFormat(false);
+        if (value instanceof Record)
+            return of(value.getClass()).format;
+        if (value instanceof Object[] members && value.getClass() == Object[].class) {
+            List<Format> formats = new ArrayList<>(members.length);
+            for (Object member : members)
+                formats.add(formatForValue(requireNonNull(member, "Tuple member is null")));
+            return TupleFormat.array(formats);
+        }
+        if (value.getClass().isArray())
+            return of(value.getClass()).format;
+        if (value instanceof Collection<?> collection)
+            return new ArrayFormat(commonFormat(collection), null);
+        if (value instanceof Map<?, ?> map) {
+            if (map.isEmpty())
+                return ArrayFormat.dictionary(new StringFormat("s"), new VariantFormat(true));
+            if (commonFormat(map.keySet()) instanceof VariantFormat)
+                throw new IllegalArgumentException(
+                        "Cannot derive a GVariant type for a Map with different key types");
+            return ArrayFormat.dictionary(formatForValue(map.keySet().iterator().next()),
+                    new VariantFormat(true));
+        }
+        if (value instanceof Optional<?> optional)
+            return new MaybeFormat(optional.isPresent()
+                    ? formatForValue(optional.get())
+                    : new VariantFormat(true));
+        throw new IllegalArgumentException(
+                "Cannot derive a GVariant type for " + value.getClass());
+    }
+
+    // The format of the elements of a List or the keys of a Map inside a "v":
+    // the type of the values when they all have the same type, or "v"
+    private static Format commonFormat(Collection<?> values) {
+        String typeString = null;
+        for (Object value : values) {
+            String ts = formatForValue(requireNonNull(value, "Element is null")).typeString;
+            if (typeString != null && !typeString.equals(ts))
+                return new VariantFormat(true);
+            typeString = ts;
+        }
+        return typeString == null
+                ? new VariantFormat(true)
+                : new DynamicFormat(typeString);
+    }
+
+    private static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType pt)
+            return pt.getActualTypeArguments()[index];
+        return Object.class;
+    }
+
+    private static void check(String typeString, String expected, Type type) {
+        if (typeString != null && !typeString.equals(expected))
+            throw new IllegalArgumentException("GVariant type %s does not match %s"
+                    .formatted(typeString, type.getTypeName()));
+    }
+
+    private static IllegalArgumentException unsupported(Type type) {
+        return new IllegalArgumentException("Unsupported type for GVariant serialization: "
+                + type.getTypeName());
+    }
+
+    /*
+     * The serialization format of a GVariant type. Every format aligns the
+     * writer before it writes a value.
+     */
+    private abstract static class Format {
+        final VariantTypeInfo info;
+        final String typeString;
+        final int alignment;
+        final long fixedSize; // -1 for variable-size types
+
+        Format(String typeString) {
+            this.info = VariantTypeInfo.of(typeString);
+            this.typeString = typeString;
+            this.alignment = info.alignment;
+            this.fixedSize = info.fixedSize;
+        }
+
+        abstract void write(Writer writer, Object value);
+
+        abstract Object read(MemorySegment data);
+    }
+
+    // Fixed-size basic types
+    private static final class BasicFormat extends Format {
+        private final char type;
+
+        private BasicFormat(char type) {
+            super(String.valueOf(type));
+            this.type = type;
+        }
+
+        static boolean isBoxed(Class<?> cls) {
+            return cls == Boolean.class || cls == Byte.class
+                    || cls == Short.class || cls == Integer.class
+                    || cls == Long.class || cls == Double.class;
+        }
+
+        static BasicFormat of(char type) {
+            return new BasicFormat(type);
+        }
+
+        // Returns null when the type string does not fit the Java class
+        static BasicFormat of(Class<?> cls, String typeString) {
+            String allowed;
+            if (cls == boolean.class || cls == Boolean.class) allowed = "b";
+            else if (cls == byte.class || cls == Byte.class) allowed = "y";
+            else if (cls == short.class || cls == Short.class) allowed = "nq";
+            else if (cls == int.class || cls == Integer.class) allowed = "iuh";
+            else if (cls == long.class || cls == Long.class) allowed = "xt";
+            else if (cls == double.class || cls == Double.class) allowed = "d";
+            else return null;
+
+            if (typeString == null)
+                return of(allowed.charAt(0));
+            if (typeString.length() != 1 || allowed.indexOf(typeString.charAt(0)) < 0)
+                return null;
+            return of(typeString.charAt(0));
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            writer.align(alignment);
+            switch (type) {
+                case 'b' -> writer.putByte((byte) ((Boolean) value ? 1 : 0));
+                case 'y' -> writer.putByte((Byte) value);
+                case 'n', 'q' -> writer.putShort((Short) value);
+                case 'i', 'u', 'h' -> writer.putInt((Integer) value);
+                case 'x', 't' -> writer.putLong((Long) value);
+                default -> writer.putDouble((Double) value);
+            }
+        }
+
+        @Override
+        Object read(MemorySegment data) {
+            // Data of the wrong size is read as a zero value, like GLib does
+            boolean zero = data.byteSize() != fixedSize;
+            return switch (type) {
+                case 'b' -> !zero && data.get(ValueLayout.JAVA_BYTE, 0) != 0;
+                case 'y' -> zero ? (byte) 0 : data.get(ValueLayout.JAVA_BYTE, 0);
+                case 'n', 'q' -> zero ? (short) 0 : data.get(ValueLayout.JAVA_SHORT_UNALIGNED, 0);
+                case 'i', 'u', 'h' -> zero ? 0 : data.get(ValueLayout.JAVA_INT_UNALIGNED, 0);
+                case 'x', 't' -> zero ? 0L : data.get(ValueLayout.JAVA_LONG_UNALIGNED, 0);
+                default -> zero ? 0.0 : data.get(ValueLayout.JAVA_DOUBLE_UNALIGNED, 0);
+            };
+        }
+    }
+
+    // Strings, object paths and signatures: UTF-8 with a trailing NUL
+    private static final class StringFormat extends Format {
+        StringFormat(String typeString) {
+            super(typeString);
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            for (byte b : bytes)
+                if (b == 0)
+                    throw new IllegalArgumentException("String contains a NUL character");
+            writer.putBytes(bytes);
+            writer.putByte((byte) 0);
+        }
+
+        @Override
+        Object read(MemorySegment data) {
+            long size = data.byteSize();
+            if (size == 0 || data.get(ValueLayout.JAVA_BYTE, size - 1) != 0)
+                return "";
+            return new String(data.asSlice(0, size - 1).toArray(ValueLayout.JAVA_BYTE),
+                    StandardCharsets.UTF_8);
+        }
+    }
+
+    // Byte arrays are copied in one operation
+    private static final class ByteArrayFormat extends Format {
+        ByteArrayFormat() {
+            super("ay");
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            writer.putBytes((byte[]) value);
+        }
+
+        @Override
+        Object read(MemorySegment data) {
+            return data.toArray(ValueLayout.JAVA_BYTE);
+        }
+    }
+
+    // Maybe types, as Optional
+    private static final class MaybeFormat extends Format {
+        private final Format element;
+
+        MaybeFormat(Format element) {
+            super("m" + element.typeString);
+            this.element = element;
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            var optional = (Optional<?>) requireNonNull(value, "Optional is null");
+            if (optional.isEmpty())
+                return;
+            element.write(writer, optional.get());
+            if (element.fixedSize < 0)
+                writer.putByte((byte) 0);
+        }
+
+        @Override
+        Object read(MemorySegment data) {
+            long size = data.byteSize();
+            if (size == 0)
+                return Optional.empty();
+            if (element.fixedSize >= 0)
+                return size == element.fixedSize
+                        ? Optional.of(element.read(data))
+                        : Optional.empty();
+            return Optional.of(element.read(data.asSlice(0, size - 1)));
+        }
+    }
+
+    // Arrays, Lists and Maps (arrays of dictionary entries)
+    private static final class ArrayFormat extends Format {
+        private final Format element;
+        private final Class<?> componentType; // null for List
+        private final boolean dictionary;
+
+        ArrayFormat(Format element, Class<?> componentType) {
+            this(element, componentType, false);
+        }
+
+        private ArrayFormat(Format element, Class<?> componentType,
+                            boolean dictionary) {
+            super("a" + element.typeString);
+            this.element = element;
+            this.componentType = componentType;
+            this.dictionary = dictionary;
+        }
+
+        static ArrayFormat dictionary(Format key, Format value) {
+            return new ArrayFormat(TupleFormat.entry(key, value), null, true);
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            requireNonNull(value, "Array is null");
+            writer.align(alignment);
+            long start = writer.position;
+
+            Iterator<?> iterator;
+            int count;
+            if (dictionary) {
+                var map = (Map<?, ?>) value;
+                iterator = map.entrySet().iterator();
+                count = map.size();
+            } else if (componentType != null) {
+                count = Array.getLength(value);
+                iterator = new Iterator<>() {
+                    int i = 0;
+                    public boolean hasNext() { return i < count; }
+                    public Object next() { return Array.get(value, i++); }
+                };
+            } else {
+                var collection = (Collection<?>) value;
+                iterator = collection.iterator();
+                count = collection.size();
+            }
+
+            if (element.fixedSize >= 0) {
+                while (iterator.hasNext())
+                    element.write(writer, iterator.next());
+                return;
+            }
+
+            long[] ends = new long[count];
+            int n = 0;
+            while (iterator.hasNext()) {
+                element.write(writer, iterator.next());
+                ends[n++] = writer.position - start;
+            }
+            writer.putOffsets(start, ends, n, false);
+        }
+
+        @Override
+        Object read(MemorySegment data) {
+            long size = data.byteSize();
+            List<Object> list = new ArrayList<>();
+            if (element.fixedSize >= 0) {
+                if (size % element.fixedSize != 0)
+                    throw invalidData();
+                for (long offset = 0; offset < size; offset += element.fixedSize)
+                    list.add(element.read(data.asSlice(offset, element.fixedSize)));
+            } else if (size > 0) {
+                int offsetSize = offsetSize(size);
+                long offsetsStart = offsetsStart(data);
+                long count = (size - offsetsStart) / offsetSize;
+                long previousEnd = 0;
+                for (long i = 0; i < count; i++) {
+                    long end = readOffset(data, offsetsStart + i * offsetSize, offsetSize);
+                    long start = align(previousEnd, element.alignment);
+                    if (start > end || end > offsetsStart)
+                        throw invalidData();
+                    list.add(element.read(data.asSlice(start, end - start)));
+                    previousEnd = end;
+                }
+            }
+
+            if (dictionary) {
+                Map<Object, Object> map = LinkedHashMap.newLinkedHashMap(list.size());
+                for (Object entry : list) {
+                    var e = (Map.Entry<?, ?>) entry;
+                    map.put(e.getKey(), e.getValue());
+                }
+                return map;
+            }
+            if (componentType != null) {
+                Object array = Array.newInstance(componentType, list.size());
+                for (int i = 0; i < list.size(); i++)
+                    Array.set(array, i, list.get(i));
+                return array;
+            }
+            return Collections.unmodifiableList(list);
+        }
+    }
+
+    // Tuples (records and Object arrays) and dictionary entries
+    private static final class TupleFormat extends Format {
+        private final Format[] members;
+        private final BiFunction<Object, Integer, Object> getter;
+        private final Function<Object[], Object> constructor;
+
+        private TupleFormat(String typeString, Format[] members,
+                            BiFunction<Object, Integer, Object> getter,
+                            Function<Object[], Object> constructor) {
+            super(typeString);
+            this.members = members;
+            this.getter = getter;
+            this.constructor = constructor;
+        }
+
+        static TupleFormat record(Class<?> cls) {
+            RecordComponent[] components = cls.getRecordComponents();
+            Format[] members = new Format[components.length];
+            Method[] accessors = new Method[components.length];
+            Class<?>[] types = new Class<?>[components.length];
+            StringBuilder typeString = new StringBuilder("(");
+            for (int i = 0; i < components.length; i++) {
+                var annotation = components[i].getAnnotation(VariantTypeString.class);
+                members[i] = formatFor(components[i].getGenericType(),
+                        annotation == null ? null : annotation.value());
+                accessors[i] = components[i].getAccessor();
+                accessors[i].trySetAccessible();
+                types[i] = components[i].getType();
+                typeString.append(members[i].typeString);
+            }
+            typeString.append(")");
+
+            Constructor<?> ctor;
+            try {
+                ctor = cls.getDeclaredConstructor(types);
+                ctor.trySetAccessible();
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(e);
+            }
+
+            return new TupleFormat(typeString.toString(), members,
+                    (value, i) -> {
+                        try {
+                            return accessors[i].invoke(value);
+                        } catch (IllegalAccessException | InvocationTargetException e) {
+                            throw new IllegalArgumentException(e);
+                        }
+                    },
+                    args -> {
+                        try {
+                            return ctor.newInstance(args);
+                        } catch (InstantiationException | IllegalAccessException
+                                 | InvocationTargetException e) {
+                            throw new IllegalArgumentException(e);
+                        }
+                    });
+        }
+
+        static TupleFormat array(List<Format> members) {
+            StringBuilder typeString = new StringBuilder("(");
+            members.forEach(m -> typeString.append(m.typeString));
+            typeString.append(")");
+            return new TupleFormat(typeString.toString(),
+                    members.toArray(Format[]::new),
+                    (value, i) -> ((Object[]) value)[i],
+                    args -> args);
+        }
+
+        static TupleFormat entry(Format key, Format value) {
+            if (!(key instanceof BasicFormat || key instanceof StringFormat))
+                throw new IllegalArgumentException("Dictionary key must be a basic type: "
+                        + key.typeString);
+            return new TupleFormat("{" + key.typeString + value.typeString + "}",
+                    new Format[] {key, value},
+                    (entry, i) -> i == 0
+                            ? ((Map.Entry<?, ?>) entry).getKey()
+                            : ((Map.Entry<?, ?>) entry).getValue(),
+                    args -> new AbstractMap.SimpleImmutableEntry<>(args[0], args[1]));
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            requireNonNull(value, "Tuple is null");
+            writer.align(alignment);
+            long start = writer.position;
+
+            if (members.length == 0) {
+                writer.putByte((byte) 0);
+                return;
+            }
+
+            long[] ends = new long[members.length];
+            int n = 0;
+            for (int i = 0; i < members.length; i++) {
+                Object member = requireNonNull(getter.apply(value, i),
+                        "Tuple member is null");
+                members[i].write(writer, member);
+                if (members[i].fixedSize < 0 && i < members.length - 1)
+                    ends[n++] = writer.position - start;
+            }
+
+            if (fixedSize >= 0)
+                writer.pad(start, fixedSize);
+            else
+                writer.putOffsets(start, ends, n, true);
+        }
+
+        @Override
+        Object read(MemorySegment data) {
+            long[] bounds = info.memberBounds(data);
+            Object[] args = new Object[members.length];
+            for (int i = 0; i < members.length; i++)
+                args[i] = members[i].read(data.asSlice(bounds[2 * i],
+                        bounds[2 * i + 1] - bounds[2 * i]));
+            return constructor.apply(args);
+        }
+    }
+
+    // Variants: the value, a NUL byte, and the type string
+    private static final class VariantFormat extends Format {
+        // When true, the value is a Java object, otherwise a GVariant
+        private final boolean dynamic;
+
+        VariantFormat(boolean dynamic) {
+            super("v");
+            this.dynamic = dynamic;
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            requireNonNull(value, "Variant value is null");
+            writer.align(alignment);
+            String typeString;
+            if (value instanceof Variant variant) {
+                typeString = variant.getTypeString();
+                writer.putSegment(serializedData(variant));
+                Reference.reachabilityFence(variant);
+            } else {
+                var format = formatForValue(value);
+                typeString = format.typeString;
+                format.write(writer, value);
+            }
+            writer.putByte((byte) 0);
+            writer.putBytes(typeString.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        Object read(MemorySegment data) {
+            long separator = variantSeparator(data);
+
+            String typeString = new String(
+                    data.asSlice(separator + 1).toArray(ValueLayout.JAVA_BYTE),
+                    StandardCharsets.US_ASCII);
+            MemorySegment child = data.asSlice(0, separator);
+
+            if (dynamic)
+                return formatFor(typeString).read(child);
+
+            var bytes = new Bytes(child.toArray(ValueLayout.JAVA_BYTE));
+            return Variant.fromBytes(new VariantType(typeString), bytes, false);
+        }
+    }
+
+    /*
+     * The elements of a List or the keys of a Map inside a "v", that all
+     * have the same GVariant type. The format is derived again for every
+     * value, because values with the same type can be of different Java
+     * classes (for example a record and an Object array).
+     */
+    private static final class DynamicFormat extends Format {
+        DynamicFormat(String typeString) {
+            super(typeString);
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            formatForValue(value).write(writer, value);
+        }
+
+        @Override
+        Object read(MemorySegment data) {
+            return formatFor(typeString).read(data);
+        }
+    }
+
+    // Writes serialized data into a native buffer that grows as needed
+    private static final class Writer {
+        private MemorySegment buffer;
+        private long position = 0;
+
+        Writer() {
+            buffer = allocate(MemorySegment.NULL, 64);
+        }
+
+        private static MemorySegment allocate(MemorySegment previous, long size) {
+            try {
+                MemorySegment result = MemorySegment.NULL.equals(previous)
+                        ? (MemorySegment) g_malloc.invokeExact(size)
+                        : (MemorySegment) g_realloc.invokeExact(previous, size);
+                return result.reinterpret(size);
+            } catch (Throwable _err) {
+                throw new AssertionError("Unexpected exception occurred: ", _err);
+            }
+        }
+
+        private void ensure(long n) {
+            long required = position + n;
+            if (required > buffer.byteSize())
+                buffer = allocate(buffer, Math.max(required, buffer.byteSize() * 2));
+        }
+
+        void align(int alignment) {
+            pad(0, VariantTypeInfo.align(position, alignment));
+        }
+
+        // Pad with zero bytes until position start + size
+        void pad(long start, long size) {
+            long target = start + size;
+            if (target > position) {
+                ensure(target - position);
+                buffer.asSlice(position, target - position).fill((byte) 0);
+                position = target;
+            }
+        }
+
+        void putByte(byte value) {
+            ensure(1);
+            buffer.set(ValueLayout.JAVA_BYTE, position++, value);
+        }
+
+        void putShort(short value) {
+            ensure(2);
+            buffer.set(ValueLayout.JAVA_SHORT_UNALIGNED, position, value);
+            position += 2;
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            buffer.set(ValueLayout.JAVA_INT_UNALIGNED, position, value);
+            position += 4;
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            buffer.set(ValueLayout.JAVA_LONG_UNALIGNED, position, value);
+            position += 8;
+        }
+
+        void putDouble(double value) {
+            ensure(8);
+            buffer.set(ValueLayout.JAVA_DOUBLE_UNALIGNED, position, value);
+            position += 8;
+        }
+
+        void putBytes(byte[] bytes) {
+            ensure(bytes.length);
+            MemorySegment.copy(bytes, 0, buffer, ValueLayout.JAVA_BYTE, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void putSegment(MemorySegment segment) {
+            ensure(segment.byteSize());
+            MemorySegment.copy(segment, 0, buffer, position, segment.byteSize());
+            position += segment.byteSize();
+        }
+
+        /*
+         * Write the framing offsets of a container that starts at the
+         * provided position. Tuples store their offsets in reverse order.
+         */
+        void putOffsets(long start, long[] ends, int count, boolean reverse) {
+            long body = position - start;
+            int size = body + count <= 0xFF ? 1
+                    : body + 2L * count <= 0xFFFF ? 2
+                    : body + 4L * count <= 0xFFFFFFFFL ? 4
+                    : 8;
+            ensure((long) size * count);
+            for (int i = 0; i < count; i++) {
+                long end = ends[reverse ? count - 1 - i : i];
+                switch (size) {
+                    case 1 -> buffer.set(ValueLayout.JAVA_BYTE, position, (byte) end);
+                    case 2 -> buffer.set(OFFSET_16, position, (short) end);
+                    case 4 -> buffer.set(OFFSET_32, position, (int) end);
+                    default -> buffer.set(OFFSET_64, position, end);
+                }
+                position += size;
+            }
+        }
+
+        // Transfer the buffer to a new GBytes
+        MemorySegment take() {
+            try {
+                var result = (MemorySegment) g_bytes_new_take.invokeExact(buffer, position);
+                buffer = MemorySegment.NULL;
+                return result;
+            } catch (Throwable _err) {
+                throw new AssertionError("Unexpected exception occurred: ", _err);
+            }
+        }
+
+        void free() {
+            try {
+                g_free.invokeExact(buffer);
+                buffer = MemorySegment.NULL;
+            } catch (Throwable _err) {
+                throw new AssertionError("Unexpected exception occurred: ", _err);
+            }
+        }
+    }
+}
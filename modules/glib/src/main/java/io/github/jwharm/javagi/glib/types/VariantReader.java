@@ -0,0 +1,436 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.glib.types;
+
+import io.github.jwharm.javagi.interop.Interop;
+import org.gnome.glib.GLib;
+import org.gnome.glib.Variant;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static io.github.jwharm.javagi.glib.types.VariantTypeInfo.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the serialized data of a GVariant without native calls per element.
+ * <p>
+ * {@link #of(Variant)} retrieves the serialized data of a GVariant once. The
+ * reader then navigates the data in Java, following the GVariant
+ * serialization format: {@link #child(int)} returns a reader for an array
+ * element, tuple member or dictionary entry, and the {@code get} methods read
+ * basic values. Arrays of fixed-size elements (such as {@code ay},
+ * {@code ai}, {@code ad} and {@code a(ii)}) are available as a memory segment
+ * view with {@link #elements()}, or can be copied into a Java array.
+ * <p>
+ * The reader holds a reference on the GVariant, so the data remains valid
+ * until the reader (and all readers and segments derived from it) are no
+ * longer reachable. The reference is then released by the garbage collector.
+ * <p>
+ * Invalid serialized data results in an {@link IllegalArgumentException}.
+ * Reading a value with a method that does not match its type results in an
+ * {@link IllegalStateException}.
+ */
+public final class VariantReader {
+
+    static {
+        GLib.javagi$ensureInitialized();
+    }
+
+    private static final MethodHandle g_variant_ref_sink = Interop.downcallHandle(
+            "g_variant_ref_sink",
+            FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_variant_unref = Interop.downcallHandle(
+            "g_variant_unref",
+            FunctionDescriptor.ofVoid(ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_variant_get_data = Interop.downcallHandle(
+            "g_variant_get_data",
+            FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_variant_get_size = Interop.downcallHandle(
+            "g_variant_get_size",
+            FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.ADDRESS),
+            false);
+
+    private final VariantTypeInfo info;
+    private final MemorySegment data;
+
+    // Member positions of a tuple, calculated on first use
+    private long[] bounds;
+
+    private VariantReader(VariantTypeInfo info, MemorySegment data) {
+        this.info = info;
+        this.data = data;
+    }
+
+    /**
+     * Create a reader for the serialized data of a GVariant. When the
+     * GVariant was constructed from child values, it is serialized once.
+     *
+     * @param  variant the GVariant to read
+     * @return a reader for the GVariant
+     */
+    public static VariantReader of(Variant variant) {
+        requireNonNull(variant);
+        var info = VariantTypeInfo.of(variant.getTypeString());
+        try {
+            MemorySegment handle = (MemorySegment) g_variant_ref_sink.invokeExact(variant.handle());
+            long size = (long) g_variant_get_size.invokeExact(handle);
+            MemorySegment data = (MemorySegment) g_variant_get_data.invokeExact(handle);
+            if (size == 0 || MemorySegment.NULL.equals(data)) {
+                g_variant_unref.invokeExact(handle);
+                return new VariantReader(info, MemorySegment.NULL.asReadOnly());
+            }
+            return new VariantReader(info, data.reinterpret(size, Arena.ofAuto(),
+                    s -> unref(handle)).asReadOnly());
+        } catch (Throwable _err) {
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        }
+    }
+
+    private static void unref(MemorySegment handle) {
+        try {
+            g_variant_unref.invokeExact(handle);
+        } catch (Throwable _err) {
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        }
+    }
+
+    /**
+     * Get the GVariant type string of the value.
+     *
+     * @return the type string
+     */
+    public String typeString() {
+        return info.typeString;
+    }
+
+    /**
+     * Get a read-only view of the serialized data of the value.
+     *
+     * @return the serialized data
+     */
+    public MemorySegment data() {
+        return data;
+    }
+
+    /**
+     * Get the number of children: the number of elements of an array, the
+     * number of members of a tuple or dictionary entry, 0 or 1 for a maybe
+     * value, and 1 for a variant.
+     *
+     * @return the number of children
+     * @throws IllegalStateException if the value is a basic type
+     */
+    public int size() {
+        return switch (info.kind) {
+            case 'a' -> {
+                var element = info.children[0];
+                long size = data.byteSize();
+                if (element.fixedSize >= 0)
+                    yield size % element.fixedSize == 0
+                            ? Math.toIntExact(size / element.fixedSize)
+                            : 0;
+                yield size == 0 ? 0 : Math.toIntExact(
+                        (size - offsetsStart(data)) / offsetSize(size));
+            }
+            case '(', '{' -> info.children.length;
+            case 'm' -> getMaybe().isPresent() ? 1 : 0;
+            case 'v' -> 1;
+            default -> throw wrongType("a container");
+        };
+    }
+
+    /**
+     * Get a reader for a child value: an array element, tuple member,
+     * dictionary entry, the value of a maybe type, or the value of a
+     * variant.
+     *
+     * @param  index the index of the child
+     * @return a reader for the child value
+     * @throws IndexOutOfBoundsException if the index is out of range
+     * @throws IllegalStateException     if the value is a basic type
+     */
+    public VariantReader child(int index) {
+        switch (info.kind) {
+            case 'a' -> {
+                var element = info.children[0];
+                if (element.fixedSize >= 0) {
+                    long count = data.byteSize() % element.fixedSize == 0
+                            ? data.byteSize() / element.fixedSize
+                            : 0;
+                    if (index < 0 || index >= count)
+                        throw new IndexOutOfBoundsException(index);
+                    return new VariantReader(element,
+                            data.asSlice(index * element.fixedSize, element.fixedSize));
+                }
+                long size = data.byteSize();
+                if (index < 0 || size == 0)
+                    throw new IndexOutOfBoundsException(index);
+                int offsetSize = offsetSize(size);
+                long offsetsStart = offsetsStart(data);
+                if (index >= (size - offsetsStart) / offsetSize)
+                    throw new IndexOutOfBoundsException(index);
+                long start = index == 0 ? 0 : align(
+                        readOffset(data, offsetsStart + (long) (index - 1) * offsetSize, offsetSize),
+                        element.alignment);
+                long end = readOffset(data, offsetsStart + (long) index * offsetSize, offsetSize);
+                if (start > end || end > offsetsStart)
+                    throw invalidData();
+                return new VariantReader(element, data.asSlice(start, end - start));
+            }
+            case '(', '{' -> {
+                if (index < 0 || index >= info.children.length)
+                    throw new IndexOutOfBoundsException(index);
+                if (bounds == null)
+                    bounds = info.memberBounds(data);
+                return new VariantReader(info.children[index],
+                        data.asSlice(bounds[2 * index], bounds[2 * index + 1] - bounds[2 * index]));
+            }
+            case 'm' -> {
+                if (index != 0)
+                    throw new IndexOutOfBoundsException(index);
+                return getMaybe().orElseThrow(() -> new IndexOutOfBoundsException(index));
+            }
+            case 'v' -> {
+                if (index != 0)
+                    throw new IndexOutOfBoundsException(index);
+                return getVariant();
+            }
+            default -> throw wrongType("a container");
+        }
+    }
+
+    /**
+     * Get a read-only view of the elements of an array of fixed-size
+     * elements, for example {@code ay}, {@code ai}, {@code ad} or
+     * {@code a(ii)}. The elements are stored consecutively, in native byte
+     * order, every {@link #elementSize()} bytes.
+     *
+     * @return the array elements
+     * @throws IllegalStateException if the value is not an array of
+     *                               fixed-size elements
+     */
+    public MemorySegment elements() {
+        long elementSize = elementSize();
+        // An array with an invalid size is read as an empty array
+        return data.byteSize() % elementSize == 0 ? data : data.asSlice(0, 0);
+    }
+
+    /**
+     * Get the size of the elements of an array of fixed-size elements.
+     *
+     * @return the element size in bytes
+     * @throws IllegalStateException if the value is not an array of
+     *                               fixed-size elements
+     */
+    public long elementSize() {
+        if (info.kind != 'a' || info.children[0].fixedSize < 0)
+            throw wrongType("an array of fixed-size elements");
+        return info.children[0].fixedSize;
+    }
+
+    /**
+     * Copy the contents of an {@code ay} array into a Java byte array.
+     *
+     * @return the bytes
+     */
+    public byte[] toByteArray() {
+        return arrayOf("ay").toArray(ValueLayout.JAVA_BYTE);
+    }
+
+    /**
+     * Copy the contents of an {@code an} or {@code aq} array into a Java
+     * short array.
+     *
+     * @return the values
+     */
+    public short[] toShortArray() {
+        return arrayOf("an", "aq").toArray(ValueLayout.JAVA_SHORT_UNALIGNED);
+    }
+
+    /**
+     * Copy the contents of an {@code ai}, {@code au} or {@code ah} array into
+     * a Java int array.
+     *
+     * @return the values
+     */
+    public int[] toIntArray() {
+        return arrayOf("ai", "au", "ah").toArray(ValueLayout.JAVA_INT_UNALIGNED);
+    }
+
+    /**
+     * Copy the contents of an {@code ax} or {@code at} array into a Java long
+     * array.
+     *
+     * @return the values
+     */
+    public long[] toLongArray() {
+        return arrayOf("ax", "at").toArray(ValueLayout.JAVA_LONG_UNALIGNED);
+    }
+
+    /**
+     * Copy the contents of an {@code ad} array into a Java double array.
+     *
+     * @return the values
+     */
+    public double[] toDoubleArray() {
+        return arrayOf("ad").toArray(ValueLayout.JAVA_DOUBLE_UNALIGNED);
+    }
+
+    /**
+     * Read a boolean value.
+     *
+     * @return the value
+     */
+    public boolean getBoolean() {
+        check("b");
+        return isFixedSize() && data.get(ValueLayout.JAVA_BYTE, 0) != 0;
+    }
+
+    /**
+     * Read a byte value.
+     *
+     * @return the value
+     */
+    public byte getByte() {
+        check("y");
+        return isFixedSize() ? data.get(ValueLayout.JAVA_BYTE, 0) : 0;
+    }
+
+    /**
+     * Read an int16 or uint16 value.
+     *
+     * @return the value
+     */
+    public short getShort() {
+        check("nq");
+        return isFixedSize() ? data.get(ValueLayout.JAVA_SHORT_UNALIGNED, 0) : 0;
+    }
+
+    /**
+     * Read an int32, uint32 or handle value.
+     *
+     * @return the value
+     */
+    public int getInt() {
+        check("iuh");
+        return isFixedSize() ? data.get(ValueLayout.JAVA_INT_UNALIGNED, 0) : 0;
+    }
+
+    /**
+     * Read an int64 or uint64 value.
+     *
+     * @return the value
+     */
+    public long getLong() {
+        check("xt");
+        return isFixedSize() ? data.get(ValueLayout.JAVA_LONG_UNALIGNED, 0) : 0;
+    }
+
+    /**
+     * Read a double value.
+     *
+     * @return the value
+     */
+    public double getDouble() {
+        check("d");
+        return isFixedSize() ? data.get(ValueLayout.JAVA_DOUBLE_UNALIGNED, 0) : 0;
+    }
+
+    /**
+     * Read a string, object path or signature.
+     *
+     * @return the value
+     */
+    public String getString() {
+        check("sog");
+        long size = data.byteSize();
+        if (size == 0 || data.get(ValueLayout.JAVA_BYTE, size - 1) != 0)
+            return "";
+        return new String(data.asSlice(0, size - 1).toArray(ValueLayout.JAVA_BYTE),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get a reader for the value of a maybe type.
+     *
+     * @return the value, or an empty Optional for a Nothing value
+     */
+    public Optional<VariantReader> getMaybe() {
+        check("m");
+        var element = info.children[0];
+        long size = data.byteSize();
+        if (size == 0)
+            return Optional.empty();
+        if (element.fixedSize >= 0)
+            return size == element.fixedSize
+                    ? Optional.of(new VariantReader(element, data))
+                    : Optional.empty();
+        return Optional.of(new VariantReader(element, data.asSlice(0, size - 1)));
+    }
+
+    /**
+     * Get a reader for the value of a variant.
+     *
+     * @return the value
+     */
+    public VariantReader getVariant() {
+        check("v");
+        long separator = variantSeparator(data);
+        String typeString = new String(
+                data.asSlice(separator + 1).toArray(ValueLayout.JAVA_BYTE),
+                StandardCharsets.US_ASCII);
+        return new VariantReader(VariantTypeInfo.of(typeString),
+                data.asSlice(0, separator));
+    }
+
+    // Data of the wrong size is read as a zero value, like GLib does
+    private boolean isFixedSize() {
+        return data.byteSize() == info.fixedSize;
+    }
+
+    private void check(String kinds) {
+        if (kinds.indexOf(info.kind) < 0)
+            throw wrongType("of type " + String.join(", ", kinds.split("")));
+    }
+
+    private MemorySegment arrayOf(String... typeStrings) {
+        for (String typeString : typeStrings)
+            if (typeString.equals(info.typeString))
+                return elements();
+        throw wrongType("of type " + String.join(", ", typeStrings));
+    }
+
+    private IllegalStateException wrongType(String expected) {
+        return new IllegalStateException("GVariant of type %s is not %s"
+                .formatted(info.typeString, expected));
+    }
+}
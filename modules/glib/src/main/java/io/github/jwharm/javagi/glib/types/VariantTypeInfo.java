@@ -0,0 +1,219 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.glib.types;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * The alignment, fixed size and child types of a GVariant type string, and
+ * helper functions to read the GVariant serialization format. Used by
+ * VariantCodec and VariantReader.
+ */
+final class VariantTypeInfo {
+
+    // Framing offsets are always little-endian
+    static final ValueLayout.OfShort OFFSET_16 =
+            ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final ValueLayout.OfInt OFFSET_32 =
+            ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final ValueLayout.OfLong OFFSET_64 =
+            ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private static final Map<String, VariantTypeInfo> CACHE = new ConcurrentHashMap<>();
+
+    final String typeString;
+    final char kind; // the first character of the type string
+    final int alignment;
+    final long fixedSize; // -1 for variable-size types
+    final VariantTypeInfo[] children; // element or members
+
+    private VariantTypeInfo(String typeString, VariantTypeInfo[] children) {
+        this.typeString = typeString;
+        this.kind = typeString.charAt(0);
+        this.children = children;
+        switch (kind) {
+            case 'b', 'y' -> { alignment = 1; fixedSize = 1; }
+            case 'n', 'q' -> { alignment = 2; fixedSize = 2; }
+            case 'i', 'u', 'h' -> { alignment = 4; fixedSize = 4; }
+            case 'x', 't', 'd' -> { alignment = 8; fixedSize = 8; }
+            case 's', 'o', 'g' -> { alignment = 1; fixedSize = -1; }
+            case 'v' -> { alignment = 8; fixedSize = -1; }
+            case 'a', 'm' -> { alignment = children[0].alignment; fixedSize = -1; }
+            default -> { alignment = maxAlignment(children); fixedSize = tupleSize(children); }
+        }
+    }
+
+    /*
+     * Get the type info for a GVariant type string. Dictionary entry types
+     * ("{sv}") are accepted too.
+     */
+    static VariantTypeInfo of(String typeString) {
+        var info = CACHE.get(typeString);
+        if (info == null) {
+            int[] pos = {0};
+            info = parse(typeString, pos);
+            if (pos[0] != typeString.length())
+                throw invalidType(typeString);
+            CACHE.put(typeString, info);
+        }
+        return info;
+    }
+
+    private static VariantTypeInfo parse(String typeString, int[] pos) {
+        int start = pos[0];
+        if (start >= typeString.length())
+            throw invalidType(typeString);
+        char c = typeString.charAt(pos[0]++);
+        VariantTypeInfo[] children = switch (c) {
+            case 'b', 'y', 'n', 'q', 'i', 'u', 'x', 't', 'h', 'd', 's', 'o', 'g', 'v' ->
+                    new VariantTypeInfo[0];
+            case 'a', 'm' -> new VariantTypeInfo[] {parse(typeString, pos)};
+            case '(', '{' -> {
+                char close = c == '(' ? ')' : '}';
+                List<VariantTypeInfo> members = new ArrayList<>();
+                while (pos[0] < typeString.length() && typeString.charAt(pos[0]) != close)
+                    members.add(parse(typeString, pos));
+                if (pos[0]++ >= typeString.length())
+                    throw invalidType(typeString);
+                if (c == '{' && members.size() != 2)
+                    throw invalidType(typeString);
+                yield members.toArray(VariantTypeInfo[]::new);
+            }
+            default -> throw invalidType(typeString);
+        };
+        return new VariantTypeInfo(typeString.substring(start, pos[0]), children);
+    }
+
+    private static int maxAlignment(VariantTypeInfo[] members) {
+        int alignment = 1;
+        for (var m : members)
+            alignment = Math.max(alignment, m.alignment);
+        return alignment;
+    }
+
+    // A tuple with only fixed-size members is padded to its alignment.
+    // The empty tuple has size 1.
+    private static long tupleSize(VariantTypeInfo[] members) {
+        if (members.length == 0)
+            return 1;
+        long offset = 0;
+        for (var m : members) {
+            if (m.fixedSize < 0)
+                return -1;
+            offset = align(offset, m.alignment) + m.fixedSize;
+        }
+        return align(offset, maxAlignment(members));
+    }
+
+    /*
+     * Calculate the start and end positions of the members of a serialized
+     * tuple or dictionary entry. The result contains the start of member i
+     * at index 2*i and the end at index 2*i+1.
+     */
+    long[] memberBounds(MemorySegment data) {
+        long size = data.byteSize();
+        if (fixedSize >= 0 && size != fixedSize)
+            throw invalidData();
+
+        int offsetSize = fixedSize >= 0 ? 0 : offsetSize(size);
+        int frames = 0;
+        for (int i = 0; i < children.length - 1; i++)
+            if (children[i].fixedSize < 0)
+                frames++;
+        long limit = size - (long) offsetSize * frames;
+
+        long[] bounds = new long[children.length * 2];
+        long position = 0;
+        int frame = 0;
+        for (int i = 0; i < children.length; i++) {
+            var member = children[i];
+            long start = align(position, member.alignment);
+            long end;
+            if (member.fixedSize >= 0)
+                end = start + member.fixedSize;
+            else if (i == children.length - 1)
+                end = limit;
+            else
+                end = readOffset(data, size - (long) offsetSize * ++frame, offsetSize);
+            if (start > end || end > limit)
+                throw invalidData();
+            bounds[2 * i] = start;
+            bounds[2 * i + 1] = end;
+            position = end;
+        }
+        return bounds;
+    }
+
+    static long align(long offset, int alignment) {
+        return (offset + alignment - 1) & -alignment;
+    }
+
+    // The size of framing offsets in a container of the provided size
+    static int offsetSize(long size) {
+        return size > 0xFFFFFFFFL ? 8 : size > 0xFFFF ? 4 : size > 0xFF ? 2 : 1;
+    }
+
+    static long readOffset(MemorySegment data, long offset, int size) {
+        if (offset < 0 || offset + size > data.byteSize())
+            throw invalidData();
+        return switch (size) {
+            case 1 -> Byte.toUnsignedLong(data.get(ValueLayout.JAVA_BYTE, offset));
+            case 2 -> Short.toUnsignedLong(data.get(OFFSET_16, offset));
+            case 4 -> Integer.toUnsignedLong(data.get(OFFSET_32, offset));
+            default -> data.get(OFFSET_64, offset);
+        };
+    }
+
+    // The position of the framing offsets in a serialized array of
+    // variable-size elements
+    static long offsetsStart(MemorySegment data) {
+        long size = data.byteSize();
+        int offsetSize = offsetSize(size);
+        long start = readOffset(data, size - offsetSize, offsetSize);
+        if (start > size || (size - start) % offsetSize != 0)
+            throw invalidData();
+        return start;
+    }
+
+    // The position of the NUL byte between the value and the type string in
+    // a serialized variant
+    static long variantSeparator(MemorySegment data) {
+        long separator = data.byteSize() - 1;
+        while (separator >= 0 && data.get(ValueLayout.JAVA_BYTE, separator) != 0)
+            separator--;
+        if (separator < 0)
+            throw invalidData();
+        return separator;
+    }
+
+    static IllegalArgumentException invalidData() {
+        return new IllegalArgumentException("Invalid serialized GVariant data");
+    }
+
+    private static IllegalArgumentException invalidType(String typeString) {
+        return new IllegalArgumentException("Invalid GVariant type string: " + typeString);
+    }
+}
@@ -0,0 +1,207 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.interop;
+
+import io.github.jwharm.javagi.Constants;
+import org.gnome.glib.Bytes;
+import org.gnome.glib.GLib;
+import org.gnome.glib.LogLevelFlags;
+
+import java.lang.foreign.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Zero-copy conversions between {@link Bytes} and Java memory.
+ * <p>
+ * {@link #asSegment(Bytes)} and {@link #asByteBuffer(Bytes)} return a
+ * read-only view over the data of a GBytes. The view holds a reference on the
+ * GBytes, that is released when the view is garbage-collected.
+ * <p>
+ * {@link #wrap(MemorySegment, Object)} creates a GBytes that points directly
+ * to the contents of an off-heap memory segment. The Java object that owns the
+ * memory is kept reachable until the GBytes is freed.
+ */
+public final class BytesBridge {
+
+    static {
+        GLib.javagi$ensureInitialized();
+    }
+
+    private static final MethodHandle g_bytes_ref = Interop.downcallHandle(
+            "g_bytes_ref",
+            FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_bytes_unref = Interop.downcallHandle(
+            "g_bytes_unref",
+            FunctionDescriptor.ofVoid(ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_bytes_get_data = Interop.downcallHandle(
+            "g_bytes_get_data",
+            FunctionDescriptor.of(ValueLayout.ADDRESS,
+                    ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+            false);
+
+    private static final MethodHandle g_bytes_new_with_free_func =
+            Interop.downcallHandle(
+                    "g_bytes_new_with_free_func",
+                    FunctionDescriptor.of(ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS, ValueLayout.JAVA_LONG,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+                    false);
+
+    // Java objects that own the memory of a wrapped GBytes, by id
+    private static final Map<Long, Object> OWNERS = new ConcurrentHashMap<>();
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    // The upcall stub for the GDestroyNotify that releases an owner
+    private static final MemorySegment RELEASE_CB_SYM;
+
+    static {
+        try {
+            FunctionDescriptor _fdesc = FunctionDescriptor.ofVoid(ValueLayout.ADDRESS);
+            MethodHandle _handle = MethodHandles.lookup().findStatic(
+                    BytesBridge.class, "release", _fdesc.toMethodType());
+            RELEASE_CB_SYM = Linker.nativeLinker().upcallStub(_handle, _fdesc, Arena.global());
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private BytesBridge() {
+    }
+
+    /**
+     * Get a read-only view over the data of a GBytes, without copying it.
+     * <p>
+     * The returned segment holds a reference on the GBytes, so the data
+     * remains valid until the segment is no longer reachable. The reference
+     * is then released by the garbage collector.
+     *
+     * @param  bytes the GBytes
+     * @return a read-only memory segment with the contents of the GBytes
+     */
+    public static MemorySegment asSegment(Bytes bytes) {
+        requireNonNull(bytes);
+        try (var arena = Arena.ofConfined()) {
+            MemorySegment handle = (MemorySegment) g_bytes_ref.invokeExact(bytes.handle());
+            MemorySegment sizePtr = arena.allocate(ValueLayout.JAVA_LONG);
+            MemorySegment data = (MemorySegment) g_bytes_get_data.invokeExact(handle, sizePtr);
+            long size = sizePtr.get(ValueLayout.JAVA_LONG, 0);
+
+            // Empty GBytes can have a NULL data pointer
+            if (size == 0 || MemorySegment.NULL.equals(data)) {
+                g_bytes_unref.invokeExact(handle);
+                return MemorySegment.NULL.asReadOnly();
+            }
+
+            // The cleanup action must not refer to the segment itself
+            return data.reinterpret(size, Arena.ofAuto(), s -> unref(handle))
+                       .asReadOnly();
+        } catch (Throwable _err) {
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        }
+    }
+
+    /**
+     * Get a read-only direct ByteBuffer over the data of a GBytes, without
+     * copying it.
+     * <p>
+     * The returned buffer holds a reference on the GBytes, so the data
+     * remains valid until the buffer is no longer reachable.
+     *
+     * @param  bytes the GBytes
+     * @return a read-only ByteBuffer with the contents of the GBytes
+     * @see    #asSegment(Bytes)
+     */
+    public static ByteBuffer asByteBuffer(Bytes bytes) {
+        return asSegment(bytes).asByteBuffer();
+    }
+
+    /**
+     * Create a GBytes that uses the contents of an off-heap memory segment
+     * directly, without copying it.
+     * <p>
+     * The {@code owner} (for example the arena that allocated the segment, or
+     * the object that holds it) is kept reachable until the GBytes is freed.
+     * If the owner is {@link AutoCloseable}, it is closed at that moment, so
+     * an arena that is passed as the owner must be closeable from any thread
+     * (for example {@link Arena#ofShared()}).
+     * <p>
+     * The segment must not be modified while the GBytes is in use.
+     *
+     * @param  segment an off-heap memory segment
+     * @param  owner   the Java object that owns the memory, or {@code null}
+     * @return a GBytes that points to the memory of the segment
+     * @throws IllegalArgumentException if the segment is not a native segment
+     */
+    public static Bytes wrap(MemorySegment segment, Object owner) {
+        requireNonNull(segment);
+        if (!segment.isNative())
+            throw new IllegalArgumentException("Segment is not a native segment");
+
+        // Keep the segment (and with it, its arena) reachable too
+        long id = NEXT_ID.getAndIncrement();
+        OWNERS.put(id, owner == null ? segment : new Object[] {segment, owner});
+        try {
+            MemorySegment handle = (MemorySegment) g_bytes_new_with_free_func.invokeExact(
+                    segment, segment.byteSize(), RELEASE_CB_SYM, MemorySegment.ofAddress(id));
+            var bytes = new Bytes(handle);
+            MemoryCleaner.takeOwnership(bytes);
+            MemoryCleaner.setBoxedType(bytes, Bytes.getType());
+            return bytes;
+        } catch (Throwable _err) {
+            OWNERS.remove(id);
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        }
+    }
+
+    /*
+     * Called by native code when a wrapped GBytes is freed. Releases the
+     * owner of the memory, and closes it when it is AutoCloseable.
+     */
+    private static void release(MemorySegment userData) {
+        Object owner = OWNERS.remove(userData.address());
+        if (owner instanceof Object[] pair && pair[1] instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                GLib.log(Constants.LOG_DOMAIN, LogLevelFlags.LEVEL_CRITICAL,
+                        "Cannot release owner of GBytes: %s\n", e.toString());
+            }
+        }
+    }
+
+    private static void unref(MemorySegment handle) {
+        try {
+            g_bytes_unref.invokeExact(handle);
+        } catch (Throwable _err) {
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        }
+    }
+}
@@ -215,6 +215,83 @@ public class Interop {
         dst.copyFrom(src);
     }
 
+    /**
+     * Allocate a memory segment for the provided memory layout in a Java heap
+     * array. The segment is backed by a {@code long[]} array, so it is
+     * aligned to 8 bytes.
+     *
+     * @param  layout the memory layout to allocate
+     * @return the heap-backed memory segment
+     */
+    public static MemorySegment allocateHeap(MemoryLayout layout) {
+        long size = layout.byteSize();
+        return MemorySegment.ofArray(new long[(int) ((size + 7) / 8)])
+                .asSlice(0, size);
+    }
+
+    /**
+     * Get a native memory segment for a struct that can be passed to a
+     * native function. When the struct is allocated on the Java heap, its
+     * contents are copied into a native memory segment that is allocated
+     * with the provided allocator.
+     *
+     * @param  proxy     the struct, or {@code null}
+     * @param  allocator allocator for the native copy of a heap-allocated
+     *                   struct
+     * @return the memory segment of the struct or its native copy, or
+     *         {@link MemorySegment#NULL} if {@code proxy} is {@code null}
+     */
+    public static MemorySegment toNative(Proxy proxy,
+                                         SegmentAllocator allocator) {
+        if (proxy == null)
+            return NULL;
+
+        MemorySegment segment = proxy.handle();
+        if (segment.isNative())
+            return segment;
+
+        return allocator.allocate(segment.byteSize(), 8).copyFrom(segment);
+    }
+
+    /**
+     * Get a native memory segment for a struct that can be passed to a
+     * native function. When the struct is allocated on the Java heap, its
+     * contents are copied into a native memory segment that is released by
+     * the garbage collector. For a native struct, no memory is allocated.
+     *
+     * @param  proxy the struct, or {@code null}
+     * @return the memory segment of the struct or its native copy, or
+     *         {@link MemorySegment#NULL} if {@code proxy} is {@code null}
+     */
+    public static MemorySegment toNative(Proxy proxy) {
+        if (proxy == null)
+            return NULL;
+
+        MemorySegment segment = proxy.handle();
+        if (segment.isNative())
+            return segment;
+
+        return Arena.ofAuto().allocate(segment.byteSize(), 8).copyFrom(segment);
+    }
+
+    /**
+     * When the struct is allocated on the Java heap, copy the contents of the
+     * native copy (that was created with {@link #toNative}) back into the
+     * struct, after a native function has been called that may have changed
+     * it.
+     *
+     * @param nativeSegment the native copy of the struct
+     * @param proxy         the struct, or {@code null}
+     */
+    public static void copyBack(MemorySegment nativeSegment, Proxy proxy) {
+        if (proxy == null)
+            return;
+
+        MemorySegment segment = proxy.handle();
+        if (!segment.isNative())
+            segment.copyFrom(nativeSegment);
+    }
+
     /**
      * Get a GType by executing the provided get-type function.
      *
@@ -996,7 +1073,7 @@ public class Interop {
 
         MemorySegment[] addressArray = new MemorySegment[array.length];
         for (int i = 0; i < array.length; i++) {
-            addressArray[i] = array[i] == null ? NULL : array[i].handle();
+            addressArray[i] = toNative(array[i], arena);
         }
 
         return allocateNativeArray(addressArray, zeroTerminated, arena);
@@ -1025,8 +1102,9 @@ public class Interop {
         for (int i = 0; i < array.length; i++) {
             if (array[i] != null && (!NULL.equals(array[i].handle()))) {
                 // Copy array element to the native array
-                MemorySegment element = array[i].handle()
-                        .reinterpret(layout.byteSize(), arena, null);
+                MemorySegment element = array[i].handle();
+                if (element.isNative())
+                    element = element.reinterpret(layout.byteSize(), arena, null);
                 segment.asSlice(i * layout.byteSize()).copyFrom(element);
             } else {
                 // Fill the array slice with zeros
@@ -1067,8 +1145,30 @@ public class Interop {
         return memorySegment;
     }
 
+    /*
+     * For every flags enum, a lookup table from bit position to the enum
+     * constant with that (single-bit) value. Positions without a single-bit
+     * constant are null.
+     */
+    private static final ClassValue<Enum<?>[]> flagTables = new ClassValue<>() {
+        @Override
+        protected Enum<?>[] computeValue(Class<?> cls) {
+            Enum<?>[] table = new Enum<?>[Integer.SIZE];
+            Object[] constants = cls.getEnumConstants();
+            if (constants != null)
+                for (Object constant : constants) {
+                    int value = ((Enumeration) constant).getValue();
+                    if (Integer.bitCount(value) == 1)
+                        table[Integer.numberOfTrailingZeros(value)] = (Enum<?>) constant;
+                }
+            return table;
+        }
+    };
+
     /**
-     * Create an EnumSet of class `cls` from the provided bitfield
+     * Create an EnumSet of class `cls` from the provided bitfield. The enum
+     * constants are looked up in a cached table; only bits that don't
+     * correspond to a single enum constant are passed to {@code make}.
      *
      * @param  <T>      an enum implementing the Java-GI Enumeration interface
      * @param  cls      the class of the enum
@@ -1080,14 +1180,19 @@ public class Interop {
     EnumSet<T> intToEnumSet(Class<T> cls,
                             Function<Integer, T> make,
                             int bitfield) {
-        int n = bitfield;
         EnumSet<T> enumSet = EnumSet.noneOf(cls);
-        int position = 0;
+        if (bitfield == 0)
+            return enumSet;
+
+        Enum<?>[] table = flagTables.get(cls);
+        int n = bitfield;
         while (n != 0) {
-            if ((n & 1) == 1)
-                enumSet.add(make.apply(1 << position));
-            position++;
-            n >>= 1;
+            int position = Integer.numberOfTrailingZeros(n);
+            Enum<?> constant = table[position];
+            enumSet.add(constant == null
+                    ? make.apply(1 << position)
+                    : cls.cast(constant));
+            n &= n - 1; // clear the lowest set bit
         }
         return enumSet;
     }
@@ -29,8 +29,14 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.VarHandle;
 import java.lang.ref.Cleaner;
 import java.util.AbstractSequentialList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -54,7 +60,7 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
     private static final Cleaner CLEANER = Cleaner.create();
 
     // The Arena is used to allocate native Strings
-    private final Arena arena = Arena.ofAuto();
+    private final Arena arena;
 
     // Used to construct a Java instance for a native object
     private final Function<MemorySegment, E> make;
@@ -66,6 +72,11 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
     // operations on an SList can change/remove the head
     private SListNode head;
 
+    // The cached length of the list, or -1 when it must be counted again.
+    // It is updated by modifications through this wrapper, and cleared when
+    // the native list is handed out with handle().
+    private int length = -1;
+
     // Ownership is "container" (memory of item is not managed) or "full"
     private final boolean fullOwnership;
 
@@ -83,8 +94,21 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
                  Function<MemorySegment, E> make,
                  Consumer<E> free,
                  boolean fullOwnership) {
-        this.head = MemorySegment.NULL.equals(address) ? null
+        this(address, Arena.ofAuto(), make, free, fullOwnership);
+    }
+
+    /*
+     * Create a new SList wrapper that allocates native Strings in the
+     * provided Arena.
+     */
+    private SList(MemorySegment address,
+                  Arena arena,
+                  Function<MemorySegment, E> make,
+                  Consumer<E> free,
+                  boolean fullOwnership) {
+        this.head = address == null || MemorySegment.NULL.equals(address) ? null
                 : new SListNode(address);
+        this.arena = arena;
         this.make = make;
         this.free = free;
         this.fullOwnership = fullOwnership;
@@ -122,6 +146,81 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
         this(address, make, null, fullOwnership);
     }
 
+    /**
+     * Create a new {@code GLib.SList} with the elements of the provided
+     * collection, in iteration order. The native list is built in one pass
+     * (by prepending all elements and reversing the result), so this takes
+     * O(n) time, instead of O(n²) for appending the elements one by one.
+     *
+     * @param  elements      the elements to add to the new list
+     * @param  make          a function to construct element instances
+     * @param  free          a function to free element instances. If
+     *                       {@code fullOwnership} is {@code false}, this can
+     *                       safely be set to {@code null}.
+     * @param  fullOwnership whether to free element instances automatically
+     * @param  <E>           the element type
+     * @return the new list
+     */
+    public static <E> SList<E> fromCollection(Collection<? extends E> elements,
+                                             Function<MemorySegment, E> make,
+                                             Consumer<E> free,
+                                             boolean fullOwnership) {
+        Arena arena = Arena.ofAuto();
+        MemorySegment address = MemorySegment.NULL;
+        int count = 0;
+        for (E e : elements) {
+            address = SListNode.prepend(address, getAddress(e, arena));
+            count++;
+        }
+        address = SListNode.reverse(address);
+
+        var list = new SList<>(address, arena, make, free, fullOwnership);
+        list.length = count;
+        return list;
+    }
+
+    /**
+     * Create a new {@code GLib.SList} with the elements of the provided
+     * array. The native list is built in O(n) time.
+     *
+     * @param  elements      the elements to add to the new list
+     * @param  make          a function to construct element instances
+     * @param  free          a function to free element instances. If
+     *                       {@code fullOwnership} is {@code false}, this can
+     *                       safely be set to {@code null}.
+     * @param  fullOwnership whether to free element instances automatically
+     * @param  <E>           the element type
+     * @return the new list
+     * @see    #fromCollection(Collection, Function, Consumer, boolean)
+     */
+    public static <E> SList<E> fromArray(E[] elements,
+                                        Function<MemorySegment, E> make,
+                                        Consumer<E> free,
+                                        boolean fullOwnership) {
+        return fromCollection(Arrays.asList(elements), make, free, fullOwnership);
+    }
+
+    /**
+     * Create a new {@code GLib.SList} that contains the provided integers,
+     * stored in the data pointers with {@code GINT_TO_POINTER}. The native
+     * list is built in O(n) time. The elements of the returned list are the
+     * data pointers; use {@link MemorySegment#address()} to read the
+     * integer values.
+     *
+     * @param  values the integer values
+     * @return the new list
+     */
+    public static SList<MemorySegment> fromInts(int[] values) {
+        MemorySegment address = MemorySegment.NULL;
+        for (int value : values)
+            address = SListNode.prepend(address, MemorySegment.ofAddress(value));
+        address = SListNode.reverse(address);
+
+        var list = new SList<>(address, Arena.ofAuto(), m -> m, null, false);
+        list.length = values.length;
+        return list;
+    }
+
     /**
      * Returns a list iterator over the elements in this {@code GLib.SList} (in
      * proper sequence).
@@ -141,6 +240,9 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
      */
     @Override
     public @NotNull ListIterator<E> listIterator(int index) {
+        if (index < 0)
+            throw new IndexOutOfBoundsException(index);
+        int start = index;
 
         return new ListIterator<>() {
 
@@ -152,10 +254,25 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
 
             private int index = -1;
 
+            // Whether an element was returned by next() since the iterator
+            // was positioned, or since the last remove() or add()
+            private boolean returned = false;
+
             private SListNode peek() {
                 return last == null ? head : last.readNext();
             }
 
+            // Move to the requested start position without reading elements
+            {
+                for (int i = 0; i < start; i++) {
+                    if (peek() == null)
+                        throw new IndexOutOfBoundsException(start);
+                    prev = last;
+                    last = peek();
+                    index++;
+                }
+            }
+
             @Override
             public boolean hasNext() {
                 return peek() != null;
@@ -168,6 +285,7 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
                 prev = last;
                 last = peek();
                 index++;
+                returned = true;
                 var address = last == null ? null : last.readData();
                 return address == null ? null : make.apply(address);
             }
@@ -196,6 +314,9 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
 
             @Override
             public void remove() {
+                if (!returned)
+                    throw new IllegalStateException();
+                returned = false;
                 var data = last == null ? null : last.readData();
                 switch(index) {
                     case -1 -> throw new IllegalStateException();
@@ -213,6 +334,8 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
                     }
                 }
                 index--;
+                if (length > 0)
+                    length--;
 
                 if (fullOwnership && data != null) {
                     if (free == null)
@@ -224,7 +347,7 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
 
             @Override
             public void set(E e) {
-                if (last == null)
+                if (last == null || !returned)
                     throw new IllegalStateException();
 
                 var data = last.readData();
@@ -250,19 +373,147 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
                     last = prev.readNext();
                 }
                 index++;
+                returned = false;
+                if (length >= 0)
+                    length++;
             }
         };
     }
 
     /**
-     * Retrieve the size of the list. This is an expensive operation for
-     * long lists, because the entire length must be traversed.
+     * Appends all elements in the provided collection to the end of this
+     * list. The new elements are linked together first, and then
+     * concatenated to this list, so the list is traversed only once.
+     *
+     * @param  c collection containing elements to be added to this list
+     * @return {@code true} if this list changed as a result of the call
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        MemorySegment chain = MemorySegment.NULL;
+        int count = 0;
+        for (E e : c) {
+            chain = SListNode.prepend(chain, getAddress(e));
+            count++;
+        }
+        if (count == 0)
+            return false;
+
+        chain = SListNode.reverse(chain);
+        var current = head == null ? MemorySegment.NULL : head.handle();
+        head = new SListNode(SListNode.concat(current, chain));
+        if (length >= 0)
+            length += count;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Retrieve the size of the list. The first call traverses the entire
+     * list to count its length. The result is cached, and kept up-to-date
+     * when the list is modified through this wrapper. It is counted again
+     * after {@link #handle()} was called, because native code can modify
+     * the list.
      *
      * @return the length of the list
      */
     @Override
     public int size() {
-        return SListNode.length(head);
+        if (length < 0)
+            length = SListNode.length(head);
+        return length;
+    }
+
+    /**
+     * Returns the element at the specified position in this list. The native
+     * list is traversed from the head, without creating Java instances for
+     * the preceding elements.
+     *
+     * @param  index index of the element to return
+     * @return the element at the specified position in this list
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    @Override
+    public E get(int index) {
+        Objects.checkIndex(index, size());
+        SListNode node = head;
+        for (int i = 0; i < index; i++)
+            node = node.readNext();
+        return toElement(node.readData());
+    }
+
+    /**
+     * Returns an array containing all elements in this list. The native list
+     * is traversed once to read the element pointers, which are then all
+     * converted to Java instances.
+     *
+     * @return an array containing all elements in this list
+     */
+    @Override
+    public Object[] toArray() {
+        MemorySegment[] data = readAll();
+        Object[] result = new Object[data.length];
+        for (int i = 0; i < data.length; i++)
+            result[i] = toElement(data[i]);
+        return result;
+    }
+
+    /**
+     * Returns an array containing all elements in this list. The runtime
+     * type of the returned array is that of the specified array.
+     *
+     * @param  a   the array into which the elements of the list are to be
+     *             stored, if it is big enough; otherwise, a new array of the
+     *             same runtime type is allocated
+     * @param  <T> the component type of the array
+     * @return an array containing the elements of the list
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Object[] elements = toArray();
+        if (a.length < elements.length)
+            return (T[]) Arrays.copyOf(elements, elements.length, a.getClass());
+        System.arraycopy(elements, 0, a, 0, elements.length);
+        if (a.length > elements.length)
+            a[elements.length] = null;
+        return a;
+    }
+
+    /**
+     * Create an unmodifiable snapshot of the elements in this list. The
+     * snapshot supports fast random access, and is not affected by later
+     * changes to the native list.
+     *
+     * @return an unmodifiable list with the current elements of this list
+     */
+    @SuppressWarnings("unchecked")
+    public java.util.List<E> snapshot() {
+        java.util.List<?> elements = Arrays.asList(toArray());
+        return Collections.unmodifiableList((java.util.List<E>) elements);
+    }
+
+    /**
+     * Creates a {@link Spliterator} over a snapshot of the elements in this
+     * list. The spliterator has a known size and splits evenly, so parallel
+     * streams can divide the work.
+     *
+     * @return a spliterator over the elements in this list
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(toArray(), Spliterator.ORDERED);
+    }
+
+    // Walk the native list once, and read the data pointers of all elements
+    private MemorySegment[] readAll() {
+        MemorySegment[] data = new MemorySegment[size()];
+        SListNode node = head;
+        for (int i = 0; i < data.length; i++) {
+            data[i] = node.readData();
+            node = node.readNext();
+        }
+        return data;
     }
 
     /**
@@ -276,7 +527,15 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
         return head == null;
     }
 
+    private E toElement(MemorySegment data) {
+        return data == null ? null : make.apply(data);
+    }
+
     private MemorySegment getAddress(Object o) {
+        return getAddress(o, arena);
+    }
+
+    private static MemorySegment getAddress(Object o, Arena arena) {
         return switch (o) {
             case MemorySegment m -> m;
             case String s        -> arena.allocateFrom(s);
@@ -287,13 +546,15 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
 
     /**
      * Returns the memory address of the head of the list. This address can
-     * change if the list is modified.
+     * change if the list is modified. Because native code can modify the
+     * list, the cached length is cleared.
      *
      * @return the memory address of the current GLib.SList head, or
      *         {@link MemorySegment#NULL} if the head is {@code null}.
      */
     @Override
     public MemorySegment handle() {
+        length = -1;
         return head == null ? MemorySegment.NULL : head.handle();
     }
 
@@ -344,6 +605,20 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
                 "g_slist_length", FunctionDescriptor.of(ValueLayout.JAVA_INT,
                         ValueLayout.ADDRESS), false);
 
+        static MethodHandle g_slist_prepend = Interop.downcallHandle(
+                "g_slist_prepend",
+                FunctionDescriptor.of(ValueLayout.ADDRESS,
+                        ValueLayout.ADDRESS, ValueLayout.ADDRESS), false);
+
+        static MethodHandle g_slist_reverse = Interop.downcallHandle(
+                "g_slist_reverse", FunctionDescriptor.of(ValueLayout.ADDRESS,
+                        ValueLayout.ADDRESS), false);
+
+        static MethodHandle g_slist_concat = Interop.downcallHandle(
+                "g_slist_concat",
+                FunctionDescriptor.of(ValueLayout.ADDRESS,
+                        ValueLayout.ADDRESS, ValueLayout.ADDRESS), false);
+
         static MethodHandle g_slist_free = Interop.downcallHandle(
                 "g_slist_free", FunctionDescriptor.ofVoid(ValueLayout.ADDRESS),
                 false);
@@ -446,6 +721,55 @@ public class SList<E> extends AbstractSequentialList<E> implements Proxy {
             }
         }
 
+        /**
+         * Prepends a new element on to the start of the list. This is an
+         * O(1) operation.
+         *
+         * @param  list a pointer to a {@code GSList}, or {@code NULL}
+         * @param  data the data for the new element
+         * @return the new start of the list
+         */
+        static MemorySegment prepend(MemorySegment list, MemorySegment data) {
+            try {
+                return (MemorySegment) g_slist_prepend.invokeExact(list,
+                        data == null ? MemorySegment.NULL : data);
+            } catch (Throwable _err) {
+                throw new AssertionError(_err);
+            }
+        }
+
+        /**
+         * Reverses a {@code GSList}. It simply switches the next and prev
+         * pointers of each element.
+         *
+         * @param  list a pointer to a {@code GSList}, or {@code NULL}
+         * @return the start of the reversed list
+         */
+        static MemorySegment reverse(MemorySegment list) {
+            try {
+                return (MemorySegment) g_slist_reverse.invokeExact(list);
+            } catch (Throwable _err) {
+                throw new AssertionError(_err);
+            }
+        }
+
+        /**
+         * Adds the second {@code GSList} onto the end of the first
+         * {@code GSList}. Note that the elements of the second list are not
+         * copied. They are used directly.
+         *
+         * @param  list1 a pointer to a {@code GSList}, or {@code NULL}
+         * @param  list2 the list to add to the end of the first list
+         * @return the start of the new list
+         */
+        static MemorySegment concat(MemorySegment list1, MemorySegment list2) {
+            try {
+                return (MemorySegment) g_slist_concat.invokeExact(list1, list2);
+            } catch (Throwable _err) {
+                throw new AssertionError(_err);
+            }
+        }
+
         /**
          * Frees all of the memory used by a {@code GSList}. The freed elements
          * are returned to the slice allocator.
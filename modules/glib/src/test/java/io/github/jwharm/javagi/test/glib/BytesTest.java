@@ -0,0 +1,48 @@
+package io.github.jwharm.javagi.test.glib;
+
+import io.github.jwharm.javagi.interop.BytesBridge;
+import org.gnome.glib.Bytes;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test zero-copy conversions between GBytes and Java memory
+ */
+public class BytesTest {
+
+    @Test
+    void viewBytes() {
+        byte[] input = "Hello, world".getBytes(StandardCharsets.UTF_8);
+        var bytes = new Bytes(input);
+
+        var segment = BytesBridge.asSegment(bytes);
+        assertTrue(segment.isReadOnly());
+        assertArrayEquals(input, segment.toArray(ValueLayout.JAVA_BYTE));
+
+        ByteBuffer buffer = BytesBridge.asByteBuffer(bytes);
+        assertTrue(buffer.isReadOnly());
+        assertEquals(input.length, buffer.remaining());
+        assertEquals('H', buffer.get(0));
+
+        assertEquals(0, BytesBridge.asSegment(new Bytes(new byte[0])).byteSize());
+    }
+
+    @Test
+    void wrapSegment() {
+        var arena = Arena.ofShared();
+        var segment = arena.allocateFrom("Hello, world");
+        var bytes = BytesBridge.wrap(segment, arena);
+
+        assertEquals(segment.byteSize(), bytes.getSize());
+        assertArrayEquals(segment.toArray(ValueLayout.JAVA_BYTE), bytes.getData());
+
+        // The view points to the same memory as the original segment
+        assertEquals(segment.address(), BytesBridge.asSegment(bytes).address());
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.jwharm.javagi.test.glib;
+
+import io.github.jwharm.javagi.glib.MainContextExecutor;
+import org.gnome.glib.GLib;
+import org.gnome.glib.MainContext;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test running tasks on a MainContext with an executor
+ */
+public class ExecutorTest {
+
+    @Test
+    void executeTasks() throws Exception {
+        var context = new MainContext();
+        var executor = new MainContextExecutor(context);
+        var counter = new AtomicInteger();
+
+        // Post tasks from another thread
+        Thread producer = Thread.ofVirtual().start(() -> {
+            for (int i = 0; i < 1000; i++)
+                executor.execute(counter::incrementAndGet);
+        });
+        producer.join();
+        while (counter.get() < 1000)
+            context.iteration(true);
+
+        // Tasks run on the thread that iterates the main context
+        var future = executor.submit(Thread::currentThread);
+        while (!future.isDone())
+            context.iteration(true);
+        assertEquals(Thread.currentThread(), future.get());
+
+        executor.shutdown();
+        while (!executor.isTerminated())
+            context.iteration(true);
+        assertThrows(Exception.class, () -> executor.execute(() -> {}));
+    }
+
+    @Test
+    void concurrentProducers() throws Exception {
+        var context = new MainContext();
+        var executor = new MainContextExecutor(context, GLib.PRIORITY_DEFAULT,
+                Duration.ofNanos(1));
+        var counter = new AtomicInteger();
+
+        // Many small batches, that all run out of time budget
+        var producers = new ArrayList<Thread>();
+        for (int p = 0; p < 4; p++)
+            producers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 20_000; i++)
+                    executor.execute(counter::incrementAndGet);
+            }));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (counter.get() < 80_000 && System.nanoTime() < deadline)
+            context.iteration(false);
+        for (var producer : producers)
+            producer.join();
+        assertEquals(80_000, counter.get());
+
+        executor.shutdownNow();
+        while (!executor.isTerminated())
+            context.iteration(true);
+    }
+
+    @Test
+    void scheduleTask() throws Exception {
+        var context = new MainContext();
+        var executor = new MainContextExecutor(context);
+
+        long start = System.nanoTime();
+        var future = executor.schedule(() -> System.nanoTime() - start,
+                20, TimeUnit.MILLISECONDS);
+        while (!future.isDone())
+            context.iteration(true);
+        assertTrue(future.get() >= TimeUnit.MILLISECONDS.toNanos(20));
+
+        executor.shutdownNow();
+        while (!executor.isTerminated())
+            context.iteration(true);
+    }
+}
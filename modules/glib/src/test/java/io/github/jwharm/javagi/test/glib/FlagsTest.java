@@ -1,7 +1,10 @@
 package io.github.jwharm.javagi.test.glib;
 
+import io.github.jwharm.javagi.base.GErrorException;
 import io.github.jwharm.javagi.interop.Interop;
 import org.gnome.glib.AsciiType;
+import org.gnome.glib.Regex;
+import org.gnome.glib.RegexCompileFlags;
 import org.junit.jupiter.api.Test;
 
 import java.util.Set;
@@ -22,4 +25,14 @@ public class FlagsTest {
         int output = Interop.enumSetToInt(set);
         assertEquals(input, output);
     }
+
+    @Test
+    void testIntFlagsVariant() throws GErrorException {
+        var regex = new Regex("a+", Set.of(RegexCompileFlags.CASELESS), Set.of());
+        int flags = regex.getCompileFlagsAsInt();
+        assertEquals(RegexCompileFlags.CASELESS.getValue(),
+                flags & RegexCompileFlags.CASELESS.getValue());
+        assertEquals(regex.getCompileFlags(),
+                Interop.intToEnumSet(RegexCompileFlags.class, RegexCompileFlags::of, flags));
+    }
 }
@@ -0,0 +1,43 @@
+package io.github.jwharm.javagi.test.glib;
+
+import io.github.jwharm.javagi.interop.Interop;
+import org.gnome.glib.List;
+import org.gnome.glib.SList;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test bulk construction of GList and GSList
+ */
+public class ListTest {
+
+    @Test
+    void testFromCollection() {
+        var input = java.util.List.of("a", "b", "c", "d");
+        List<String> list = List.fromCollection(input, Interop::getStringFrom, null, false);
+        assertEquals(input, list);
+
+        list.addAll(java.util.List.of("e", "f"));
+        assertEquals(6, list.size());
+        assertEquals("f", list.getLast());
+
+        SList<String> slist = SList.fromArray(input.toArray(new String[0]),
+                Interop::getStringFrom, null, false);
+        assertEquals(input, slist);
+    }
+
+    @Test
+    void testFromInts() {
+        int[] values = {1, 2, -3, 4};
+        List<MemorySegment> list = List.fromInts(values);
+        assertEquals(values.length, list.size());
+        for (int i = 0; i < values.length; i++)
+            assertEquals(values[i], (int) list.get(i).address());
+
+        SList<MemorySegment> slist = SList.fromInts(new int[0]);
+        assertTrue(slist.isEmpty());
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.jwharm.javagi.test.glib;
+
+import io.github.jwharm.javagi.base.GLibLogger;
+import org.gnome.glib.GLib;
+import org.gnome.glib.LogLevelFlags;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test the cached debug-enabled check of GLibLogger
+ */
+public class LoggerTest {
+
+    @Test
+    void testDebugEnabled() {
+        boolean initial = GLib.logGetDebugEnabled();
+        try {
+            GLib.logSetDebugEnabled(true);
+            GLibLogger.reload();
+            assertTrue(GLibLogger.isDebugEnabled());
+
+            // The result is cached until reload() is called
+            GLib.logSetDebugEnabled(false);
+            assertTrue(GLibLogger.isDebugEnabled());
+            GLibLogger.reload();
+            boolean drop = GLib.logWriterDefaultWouldDrop(
+                    Set.of(LogLevelFlags.LEVEL_DEBUG), "java-gi");
+            assertEquals(drop, !GLibLogger.isDebugEnabled());
+        } finally {
+            GLib.logSetDebugEnabled(initial);
+            GLibLogger.reload();
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package io.github.jwharm.javagi.test.glib;
 
+import io.github.jwharm.javagi.base.GErrorException;
+import io.github.jwharm.javagi.base.OutLong;
 import io.github.jwharm.javagi.base.Proxy;
 import io.github.jwharm.javagi.interop.Interop;
+import org.gnome.glib.GLib;
 import org.gnome.glib.GString;
 import org.gnome.glib.OptionFlags;
 import org.gnome.glib.Variant;
@@ -200,4 +203,25 @@ public class MarshalTest {
             assertEquals(Arrays.toString(input), Arrays.toString(output));
         }
     }
+
+    @Test
+    void testPrimitiveOut() throws GErrorException {
+        OutLong out = new OutLong();
+        assertTrue(GLib.asciiStringToSignedPrimitive("-42", 10, -100, 100, out));
+        assertEquals(-42L, out.get());
+
+        // The holder can be reused
+        assertTrue(GLib.asciiStringToSignedPrimitive("99", 10, -100, 100, out));
+        assertEquals(99L, out.get());
+    }
+
+    @Test
+    void testPrimitiveOutNull() throws GErrorException {
+        // An optional out-parameter holder can be null
+        OutLong out = null;
+        assertTrue(GLib.asciiStringToSignedPrimitive("7", 10, 0, 10, out));
+
+        // A null literal still selects the Out<> method
+        assertTrue(GLib.asciiStringToSigned("7", 10, 0, 10, null));
+    }
 }
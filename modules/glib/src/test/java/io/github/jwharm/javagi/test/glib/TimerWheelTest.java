@@ -0,0 +1,55 @@
+package io.github.jwharm.javagi.test.glib;
+
+import io.github.jwharm.javagi.glib.TimerWheel;
+import org.gnome.glib.MainContext;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test scheduling and cancelling timers on a timer wheel
+ */
+public class TimerWheelTest {
+
+    @Test
+    void runTimers() {
+        var context = new MainContext();
+        try (var wheel = new TimerWheel(context)) {
+            List<Integer> order = new ArrayList<>();
+            wheel.schedule(() -> order.add(3), Duration.ofMillis(90));
+            wheel.schedule(() -> order.add(1), Duration.ofMillis(10));
+            wheel.schedule(() -> order.add(2), Duration.ofMillis(70));
+            var cancelled = wheel.schedule(() -> order.add(4), Duration.ofMillis(30));
+            assertEquals(4, wheel.size());
+
+            assertTrue(cancelled.cancel());
+            assertFalse(cancelled.cancel());
+            assertEquals(3, wheel.size());
+
+            while (wheel.size() > 0)
+                context.iteration(true);
+            assertEquals(List.of(1, 2, 3), order);
+        }
+    }
+
+    @Test
+    void timerWithSlack() {
+        var context = new MainContext();
+        try (var wheel = new TimerWheel(context)) {
+            long start = System.nanoTime();
+            long[] fired = new long[1];
+            wheel.schedule(() -> fired[0] = System.nanoTime() - start,
+                    Duration.ofMillis(20), Duration.ofMillis(50));
+
+            // The timer runs within the slack after the deadline
+            while (wheel.size() > 0)
+                context.iteration(true);
+            assertTrue(fired[0] >= Duration.ofMillis(20).toNanos());
+            assertTrue(fired[0] < Duration.ofMillis(500).toNanos());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.jwharm.javagi.test.glib;
+
+import io.github.jwharm.javagi.base.GErrorException;
+import io.github.jwharm.javagi.glib.types.VariantCodec;
+import io.github.jwharm.javagi.glib.types.VariantTypeString;
+import org.gnome.glib.Variant;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test serializing records to GVariants and back
+ */
+public class VariantCodecTest {
+
+    record Point(int x, int y) {}
+
+    record Item(String name,
+                @VariantTypeString("o") String path,
+                @VariantTypeString("u") int flags,
+                List<Point> points,
+                Optional<String> comment,
+                Map<String, Object> properties,
+                byte[] data) {}
+
+    @Test
+    void typeString() {
+        assertEquals("(ii)", VariantCodec.of(Point.class).typeString());
+        assertEquals("(soua(ii)msa{sv}ay)",
+                VariantCodec.of(Item.class).typeString());
+    }
+
+    @Test
+    void roundTrip() {
+        var codec = VariantCodec.of(Item.class);
+        var item = new Item("item", "/org/example/Item", 7,
+                List.of(new Point(1, 2), new Point(3, 4)),
+                Optional.of("note"),
+                Map.of("count", 12, "label", "twelve"),
+                new byte[] {1, 2, 3});
+
+        Variant variant = codec.encode(item);
+        assertEquals(codec.typeString(), variant.getTypeString());
+        assertTrue(variant.isNormalForm());
+
+        Item result = codec.decode(variant);
+        assertEquals(item.name(), result.name());
+        assertEquals(item.path(), result.path());
+        assertEquals(item.flags(), result.flags());
+        assertEquals(item.points(), result.points());
+        assertEquals(item.comment(), result.comment());
+        assertEquals(item.properties(), result.properties());
+        assertArrayEquals(item.data(), result.data());
+    }
+
+    @Test
+    void decodeParsedVariant() throws GErrorException {
+        var codec = VariantCodec.of(Item.class);
+        var variant = Variant.parse(codec.variantType(),
+                "('abc', objectpath '/a', uint32 5, [(1, 2)], nothing, "
+                        + "{'k': <int64 9>}, [byte 0x78, 0x79])",
+                null, null);
+
+        Item item = codec.decode(variant);
+        assertEquals("abc", item.name());
+        assertEquals("/a", item.path());
+        assertEquals(5, item.flags());
+        assertEquals(List.of(new Point(1, 2)), item.points());
+        assertEquals(Optional.empty(), item.comment());
+        assertEquals(Map.of("k", 9L), item.properties());
+        assertArrayEquals("xy".getBytes(), item.data());
+
+        // Encoding the decoded value produces the same serialized data
+        assertTrue(variant.equal(codec.encode(item)));
+    }
+
+    record Properties(Map<String, Object> properties) {}
+
+    @Test
+    void reencodeNestedVariants() throws GErrorException {
+        var codec = VariantCodec.of(Properties.class);
+        var variant = Variant.parse(codec.variantType(),
+                "({'name': <'x'>, 'tags': <['a', 'b']>, 'maybe': <just 5>, "
+                        + "'pair': <(1, 'one')>, 'mixed': <[<1>, <'two'>]>, "
+                        + "'nested': <{'n': <1>, 'list': <['c']>, 'dict': <{'k': <true>}>}>},)",
+                null, null);
+
+        // The values inside the variants are decoded to Lists, Maps,
+        // Optionals and Object arrays, and encoded with the same types
+        Properties properties = codec.decode(variant);
+        assertEquals(List.of("a", "b"), properties.properties().get("tags"));
+        assertEquals(Optional.of(5), properties.properties().get("maybe"));
+        assertTrue(variant.equal(codec.encode(properties)));
+    }
+
+    @Test
+    void unsupportedType() {
+        record Invalid(Thread thread) {}
+        assertThrows(IllegalArgumentException.class,
+                () -> VariantCodec.of(Invalid.class));
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.jwharm.javagi.test.glib;
+
+import io.github.jwharm.javagi.glib.types.VariantCodec;
+import io.github.jwharm.javagi.glib.types.VariantReader;
+import org.gnome.glib.Variant;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.ValueLayout;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test reading serialized GVariant data without native calls per element
+ */
+public class VariantReaderTest {
+
+    record Point(int x, int y) {}
+
+    record Shape(String name, List<Point> points, List<String> tags,
+                 Map<String, Object> properties) {}
+
+    @Test
+    void readFixedSizeArray() {
+        int[] values = IntStream.range(0, 1_000_000).toArray();
+        Variant variant = VariantCodec.of(int[].class).encode(values);
+
+        var reader = VariantReader.of(variant);
+        assertEquals("ai", reader.typeString());
+        assertEquals(values.length, reader.size());
+        assertEquals(4, reader.elementSize());
+        assertEquals(123_456, reader.child(123_456).getInt());
+        assertArrayEquals(values, reader.toIntArray());
+
+        // A byte array
+        var bytes = VariantReader.of(VariantCodec.of(byte[].class).encode("abc".getBytes()));
+        assertEquals("ay", bytes.typeString());
+        assertEquals('a', bytes.elements().get(ValueLayout.JAVA_BYTE, 0));
+    }
+
+    @Test
+    void readContainers() {
+        var shape = new Shape("square",
+                List.of(new Point(0, 0), new Point(0, 1), new Point(1, 1), new Point(1, 0)),
+                List.of("red", "", "filled"),
+                Map.of("area", 1.0));
+        var reader = VariantReader.of(VariantCodec.of(Shape.class).encode(shape));
+        assertEquals(4, reader.size());
+        assertEquals("square", reader.child(0).getString());
+
+        var points = reader.child(1);
+        assertEquals(8, points.elementSize());
+        assertEquals(1, points.child(2).child(1).getInt());
+        assertEquals(1, points.elements().getAtIndex(ValueLayout.JAVA_INT, 5));
+
+        var tags = reader.child(2);
+        assertEquals(3, tags.size());
+        assertEquals("red", tags.child(0).getString());
+        assertEquals("", tags.child(1).getString());
+        assertEquals("filled", tags.child(2).getString());
+        assertThrows(IndexOutOfBoundsException.class, () -> tags.child(3));
+
+        var entry = reader.child(3).child(0);
+        assertEquals("area", entry.child(0).getString());
+        assertEquals(1.0, entry.child(1).getVariant().getDouble());
+        assertThrows(IllegalStateException.class, () -> entry.child(0).getInt());
+    }
+}
@@ -288,9 +288,10 @@ public class InstanceCache {
         if (existing != null)
             return existing.get();
 
-        GLibLogger.debug("New %s %ld",
-                object.getClass().getName(),
-                address == null ? 0L : address.address());
+        if (GLibLogger.isDebugEnabled())
+            GLibLogger.debug("New %s %ld",
+                    object.getClass().getName(),
+                    address == null ? 0L : address.address());
 
         // Sink floating references
         if (object instanceof Floating floatingReference)
@@ -332,8 +333,9 @@ public class InstanceCache {
     private static void handleToggleNotify(MemorySegment ignored,
                                            MemorySegment object,
                                            int isLastRef) {
-        GLibLogger.debug("Toggle %ld, is_last_ref=%d",
-                object == null ? 0 : object.address(), isLastRef);
+        if (GLibLogger.isDebugEnabled())
+            GLibLogger.debug("Toggle %ld, is_last_ref=%d",
+                    object == null ? 0 : object.address(), isLastRef);
         if (isLastRef != 0)
             references.computeIfPresent(object, (_, v) -> v.asWeak());
         else
@@ -363,7 +365,8 @@ public class InstanceCache {
         }
 
         private boolean removeToggleRef() {
-            GLibLogger.debug("Unref %ld", address.address());
+            if (GLibLogger.isDebugEnabled())
+                GLibLogger.debug("Unref %ld", address.address());
             try {
                 g_object_remove_toggle_ref.invokeExact(
                         address, toggle_notify, MemorySegment.NULL);
@@ -35,7 +35,10 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static io.github.jwharm.javagi.Constants.LOG_DOMAIN;
 
@@ -76,6 +79,15 @@ public class Overrides {
                         ValueLayout.ADDRESS),
                 false);
 
+    /*
+     * Cache of downcall handles for virtual methods of parent classes, keyed
+     * by the TypeClass of the instance, the TypeClass or TypeInterface that
+     * declares the virtual method, and the name of the virtual method.
+     */
+    private record ChainUpKey(long gclass, Class<?> typeStruct, String name) {}
+    private static final Map<ChainUpKey, MethodHandle> chainUpHandles =
+            new ConcurrentHashMap<>();
+
     /*
      * Convert "methodName" to "overrideMethodName"
      */
@@ -387,4 +399,88 @@ public class Overrides {
             throw new InteropException(t);
         }
     }
+
+    /**
+     * Returns a downcall handle for the specified virtual method in the
+     * TypeClass of the parent class of the instance. The handle is cached per
+     * class and virtual method, so repeated calls that chain up to the parent
+     * class do not look up the parent TypeClass or link a new downcall handle.
+     *
+     * @param  address    the memory address of the object instance
+     * @param  typeStruct the TypeClass that declares the virtual method
+     * @param  layout     supplies the memory layout of the TypeClass
+     * @param  name       the name of the virtual method (as defined in the
+     *                    TypeClass)
+     * @param  fdesc      supplies the function descriptor of the virtual
+     *                    method
+     * @return a downcall handle for the virtual method of the parent class,
+     *         or {@code null} if the function pointer is {@code NULL}
+     */
+    public static MethodHandle lookupVirtualMethodParentHandle(
+                                        MemorySegment address,
+                                        Class<?> typeStruct,
+                                        Supplier<MemoryLayout> layout,
+                                        String name,
+                                        Supplier<FunctionDescriptor> fdesc) {
+        var key = new ChainUpKey(address.get(ValueLayout.ADDRESS, 0).address(),
+                typeStruct, name);
+        var handle = chainUpHandles.get(key);
+        if (handle != null)
+            return handle;
+
+        var func = lookupVirtualMethodParent(address, layout.get(), name);
+        return cacheChainUpHandle(key, func, fdesc);
+    }
+
+    /**
+     * Returns a downcall handle for the specified virtual method in the
+     * TypeInterface with the specified GType, implemented by the parent class
+     * of the instance. The handle is cached per class and virtual method, so
+     * repeated calls that chain up to the parent class do not look up the
+     * parent TypeInterface or link a new downcall handle.
+     *
+     * @param  address    the memory address of the object instance
+     * @param  typeStruct the TypeInterface that declares the virtual method
+     * @param  layout     supplies the memory layout of the TypeInterface
+     * @param  name       the name of the virtual method (as defined in the
+     *                    TypeInterface)
+     * @param  fdesc      supplies the function descriptor of the virtual
+     *                    method
+     * @param  ifaceType  the GType of the interface that declares the virtual
+     *                    method
+     * @return a downcall handle for the virtual method of the parent class,
+     *         or {@code null} if the function pointer is {@code NULL}
+     */
+    public static MethodHandle lookupVirtualMethodParentHandle(
+                                        MemorySegment address,
+                                        Class<?> typeStruct,
+                                        Supplier<MemoryLayout> layout,
+                                        String name,
+                                        Supplier<FunctionDescriptor> fdesc,
+                                        Type ifaceType) {
+        var key = new ChainUpKey(address.get(ValueLayout.ADDRESS, 0).address(),
+                typeStruct, name);
+        var handle = chainUpHandles.get(key);
+        if (handle != null)
+            return handle;
+
+        var func = lookupVirtualMethodParent(address, layout.get(), name, ifaceType);
+        return cacheChainUpHandle(key, func, fdesc);
+    }
+
+    /*
+     * Link a downcall handle for the function pointer and add it to the
+     * cache. A NULL function pointer is not cached: the caller will throw a
+     * NullPointerException.
+     */
+    private static MethodHandle cacheChainUpHandle(ChainUpKey key,
+                                                   MemorySegment func,
+                                                   Supplier<FunctionDescriptor> fdesc) {
+        if (func.equals(MemorySegment.NULL))
+            return null;
+
+        var handle = Interop.downcallHandle(func, fdesc.get());
+        var existing = chainUpHandles.putIfAbsent(key, handle);
+        return existing == null ? handle : existing;
+    }
 }
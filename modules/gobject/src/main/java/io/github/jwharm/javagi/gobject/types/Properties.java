@@ -39,7 +39,9 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 import static io.github.jwharm.javagi.Constants.LOG_DOMAIN;
@@ -49,6 +51,14 @@ import static io.github.jwharm.javagi.Constants.LOG_DOMAIN;
  */
 public class Properties {
 
+    /*
+     * Cache of resolved property handles, per GType and property name.
+     * Properties are installed during class initialization and cannot be
+     * removed, so a cached property handle remains valid.
+     */
+    private static final Map<Type, Map<String, PropertyHandle<?>>> propertyHandles
+            = new ConcurrentHashMap<>();
+
     /**
      * Read the GType of the GParamSpec of a GObject property.
      *
@@ -60,15 +70,89 @@ public class Properties {
      */
     public static Type readPropertyValueType(GObject.ObjectClass objectClass,
                                              String propertyName) {
-        ParamSpec pspec = objectClass.findProperty(propertyName);
-        if (pspec == null) {
-            throw new IllegalArgumentException("Cannot find property \"%s\" for type %s\n"
-                    .formatted(
-                            propertyName,
-                            GObjects.typeName(objectClass.readGType())));
+        return getPropertyHandle(objectClass.readGType(), propertyName)
+                .valueType();
+    }
+
+    /**
+     * Get a handle to a property of the provided GType. The property is looked
+     * up by name once, and the resulting handle is cached. The handle can be
+     * used to get and set the property on all instances of the GType without
+     * repeating the lookup.
+     *
+     * @param  objectType   the GType of a GObject class
+     * @param  propertyName the name of the property
+     * @param  <T>          the Java type of the property value
+     * @return the property handle
+     * @throws IllegalArgumentException if a property with this name is not
+     *                                  found for the GType
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PropertyHandle<T> getPropertyHandle(Type objectType,
+                                                          String propertyName) {
+        var handles = propertyHandles.computeIfAbsent(objectType,
+                _ -> new ConcurrentHashMap<>());
+        var handle = handles.get(propertyName);
+        if (handle == null) {
+            handle = lookupProperty(objectType, propertyName);
+            var existing = handles.putIfAbsent(propertyName, handle);
+            if (existing != null)
+                handle = existing;
+        }
+        return (PropertyHandle<T>) handle;
+    }
+
+    /**
+     * Get a handle to a property of the provided GObject class.
+     *
+     * @param  cls          a GObject class with a GType
+     * @param  propertyName the name of the property
+     * @param  <T>          the Java type of the property value
+     * @return the property handle
+     * @throws IllegalArgumentException if a property with this name is not
+     *                                  found for the class
+     * @see    #getPropertyHandle(Type, String)
+     */
+    public static <T> PropertyHandle<T> getPropertyHandle(
+            Class<? extends GObject> cls, String propertyName) {
+        Type objectType = Types.getGType(cls);
+        if (objectType == null)
+            throw new IllegalArgumentException("Cannot find GType for class %s"
+                    .formatted(cls.getName()));
+        return getPropertyHandle(objectType, propertyName);
+    }
+
+    /*
+     * Find the ParamSpec of a property in the GObject typeclass, and create a
+     * new property handle.
+     */
+    private static PropertyHandle<?> lookupProperty(Type objectType,
+                                                    String propertyName) {
+        TypeClass typeClass = TypeClass.ref(objectType);
+        try {
+            if (!(typeClass instanceof GObject.ObjectClass objectClass))
+                throw new IllegalArgumentException("Type %s is not a GObject class"
+                        .formatted(GObjects.typeName(objectType)));
+
+            ParamSpec pspec = objectClass.findProperty(propertyName);
+            if (pspec == null) {
+                throw new IllegalArgumentException("Cannot find property \"%s\" for type %s\n"
+                        .formatted(
+                                propertyName,
+                                GObjects.typeName(objectType)));
+            }
+            var pclass = (ParamSpec.ParamSpecClass) pspec.readGClass();
+            Type valueType = pclass == null ? null : pclass.readValueType();
+            if (valueType == null)
+                throw new IllegalArgumentException("Cannot read value type of property \"%s\" for type %s\n"
+                        .formatted(
+                                propertyName,
+                                GObjects.typeName(objectType)));
+
+            return new PropertyHandle<>(objectType, propertyName, valueType);
+        } finally {
+            typeClass.unref();
         }
-        var pclass = (ParamSpec.ParamSpecClass) pspec.readGClass();
-        return pclass == null ? null : pclass.readValueType();
     }
 
     /**
@@ -81,14 +165,8 @@ public class Properties {
      */
     public static void setProperty(GObject gobject, String propertyName,
                                    Object propertyValue) {
-        GObject.ObjectClass gclass = (GObject.ObjectClass) gobject.readGClass();
-        Type valueType = readPropertyValueType(gclass, propertyName);
-        try (var arena = Arena.ofConfined()) {
-            var gvalue = new Value(arena).init(valueType);
-            ValueUtil.objectToValue(propertyValue, gvalue);
-            gobject.setProperty(propertyName, gvalue);
-            gvalue.unset();
-        }
+        Type gtype = Types.FROM_INSTANCE(gobject);
+        getPropertyHandle(gtype, propertyName).set(gobject, propertyValue);
     }
 
     /**
@@ -101,15 +179,8 @@ public class Properties {
      *                                  found for the object
      */
     public static Object getProperty(GObject gobject, String propertyName) {
-        GObject.ObjectClass gclass = (GObject.ObjectClass) gobject.readGClass();
-        Type valueType = readPropertyValueType(gclass, propertyName);
-        try (var arena = Arena.ofConfined()) {
-            var gvalue = new Value(arena).init(valueType);
-            gobject.getProperty(propertyName, gvalue);
-            Object result = ValueUtil.valueToObject(gvalue);
-            gvalue.unset();
-            return result;
-        }
+        Type gtype = Types.FROM_INSTANCE(gobject);
+        return getPropertyHandle(gtype, propertyName).get(gobject);
     }
 
     /**
@@ -129,11 +200,6 @@ public class Properties {
 
         List<String> names = new ArrayList<>();
         List<Value> values = new ArrayList<>();
-        TypeClass typeClass = TypeClass.ref(objectType);
-
-        if (!(typeClass instanceof GObject.ObjectClass objectClass))
-            throw new IllegalArgumentException("Type %s is not a GObject class"
-                    .formatted(GObjects.typeName(objectType)));
 
         try (var arena = Arena.ofConfined()) {
             try {
@@ -163,7 +229,8 @@ public class Properties {
 
                     // Read the objectType of GValue that is expected for this
                     // property
-                    Type valueType = readPropertyValueType(objectClass, name);
+                    Type valueType = getPropertyHandle(objectType, name)
+                            .valueType();
 
                     // Create a GValue and write the object to it
                     Value gvalue = new Value(arena).init(valueType);
@@ -185,7 +252,6 @@ public class Properties {
                 );
                 return gobject;
             } finally {
-                typeClass.unref();
                 values.forEach(Value::unset);
             }
         }
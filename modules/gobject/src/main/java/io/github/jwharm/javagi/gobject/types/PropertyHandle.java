@@ -0,0 +1,206 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.gobject.types;
+
+import io.github.jwharm.javagi.gobject.ValueUtil;
+import io.github.jwharm.javagi.interop.Interop;
+import org.gnome.glib.Type;
+import org.gnome.gobject.GObject;
+import org.gnome.gobject.GObjects;
+import org.gnome.gobject.Value;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A handle to a GObject property that has been resolved once by name. The
+ * handle caches the GType of the property value and the native property
+ * name, and reuses a preallocated GValue to get and set the property, so
+ * repeated access does not perform name lookups or native allocations.
+ * <p>
+ * A property handle can be used with all instances of the GType for which
+ * it was resolved (including instances of derived types). Use
+ * {@link Properties#getPropertyHandle(Type, String)} to obtain a (cached)
+ * handle.
+ * <p>
+ * The preallocated GValue is used by one caller at a time. When a handle is
+ * used concurrently from multiple threads (or reentrantly from a property
+ * getter or setter), the other callers fall back to a temporary GValue.
+ *
+ * @param <T> the Java type of the property value
+ */
+public final class PropertyHandle<T> {
+
+    static {
+        GObjects.javagi$ensureInitialized();
+    }
+
+    private static final MethodHandle g_object_set_property =
+            Interop.downcallHandle(
+                    "g_object_set_property",
+                    FunctionDescriptor.ofVoid(ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+                    false);
+
+    private static final MethodHandle g_object_get_property =
+            Interop.downcallHandle(
+                    "g_object_get_property",
+                    FunctionDescriptor.ofVoid(ValueLayout.ADDRESS,
+                            ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+                    false);
+
+    private final Type ownerType;
+    private final String name;
+    private final Type valueType;
+    private final MemorySegment nativeName;
+    private final Value value;
+    private final AtomicBoolean busy = new AtomicBoolean(false);
+
+    /*
+     * Create a handle for a property that has already been looked up. The
+     * native name and GValue are allocated once, and released when the handle
+     * is garbage-collected.
+     */
+    PropertyHandle(Type ownerType, String name, Type valueType) {
+        this.ownerType = ownerType;
+        this.name = name;
+        this.valueType = valueType;
+        Arena arena = Arena.ofAuto();
+        this.nativeName = arena.allocateFrom(name);
+        this.value = new Value(arena).init(valueType);
+    }
+
+    /**
+     * Get the GType for which this property handle was resolved.
+     *
+     * @return the GType of the class that has the property installed
+     */
+    public Type ownerType() {
+        return ownerType;
+    }
+
+    /**
+     * Get the name of the property.
+     *
+     * @return the property name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Get the GType of the property value.
+     *
+     * @return the value type of the property
+     */
+    public Type valueType() {
+        return valueType;
+    }
+
+    /**
+     * Set the property of the provided object to the provided value.
+     *
+     * @param  gobject       the object instance
+     * @param  propertyValue the new property value
+     * @throws IllegalArgumentException if the value cannot be converted to
+     *                                  the value type of the property
+     */
+    public void set(GObject gobject, T propertyValue) {
+        if (busy.compareAndSet(false, true)) {
+            try {
+                setProperty(gobject, propertyValue, value);
+            } finally {
+                busy.set(false);
+            }
+        } else {
+            try (var arena = Arena.ofConfined()) {
+                var gvalue = new Value(arena).init(valueType);
+                setProperty(gobject, propertyValue, gvalue);
+                gvalue.unset();
+            }
+        }
+    }
+
+    /**
+     * Get the value of the property of the provided object.
+     *
+     * @param  gobject the object instance
+     * @return the property value
+     */
+    public T get(GObject gobject) {
+        if (busy.compareAndSet(false, true)) {
+            try {
+                return getProperty(gobject, value);
+            } finally {
+                busy.set(false);
+            }
+        } else {
+            try (var arena = Arena.ofConfined()) {
+                var gvalue = new Value(arena).init(valueType);
+                T result = getProperty(gobject, gvalue);
+                gvalue.unset();
+                return result;
+            }
+        }
+    }
+
+    // Write the property value into the GValue and call g_object_set_property.
+    // Afterwards, the GValue is reset, to release a copied string or reference.
+    private void setProperty(GObject gobject, T propertyValue, Value gvalue) {
+        try {
+            if (propertyValue != null
+                    && !ValueUtil.objectToValue(propertyValue, gvalue))
+                throw new IllegalArgumentException("Property \"%s\": cannot convert %s to %s"
+                        .formatted(name,
+                                propertyValue.getClass().getSimpleName(),
+                                GObjects.typeName(valueType)));
+            try {
+                g_object_set_property.invokeExact(
+                        gobject.handle(), nativeName, gvalue.handle());
+            } catch (Throwable _err) {
+                throw new AssertionError("Unexpected exception occurred: ", _err);
+            }
+        } finally {
+            gvalue.reset();
+        }
+    }
+
+    // Call g_object_get_property and read the result from the GValue.
+    // Afterwards, the GValue is reset, to release a copied string or reference.
+    private T getProperty(GObject gobject, Value gvalue) {
+        try {
+            g_object_get_property.invokeExact(
+                    gobject.handle(), nativeName, gvalue.handle());
+
+            // The caller decides the type of the property value
+            @SuppressWarnings("unchecked")
+            T result = (T) ValueUtil.valueToObject(gvalue);
+            return result;
+        } catch (Throwable _err) {
+            throw new AssertionError("Unexpected exception occurred: ", _err);
+        } finally {
+            gvalue.reset();
+        }
+    }
+}
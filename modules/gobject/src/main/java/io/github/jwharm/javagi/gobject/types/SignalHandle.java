@@ -0,0 +1,250 @@
+/* Java-GI - Java language bindings for GObject-Introspection-based libraries
+ * Copyright (C) 2022-2024 the Java-GI developers
+ *
+ * SPDX-License-Identifier: LGPL-2.1-or-later
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.jwharm.javagi.gobject.types;
+
+import io.github.jwharm.javagi.gobject.ValueUtil;
+import io.github.jwharm.javagi.interop.Interop;
+import org.gnome.glib.Type;
+import org.gnome.gobject.GObject;
+import org.gnome.gobject.GObjects;
+import org.gnome.gobject.Value;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A handle to a GObject signal that has been resolved once by name. The
+ * handle contains the signal id, detail quark, parameter types and return
+ * type of the signal, and reuses a preallocated array of GValues to emit the
+ * signal, so repeated emissions do not parse the signal name, query the
+ * signal or allocate native memory.
+ * <p>
+ * A signal handle can be used with all instances of the GType for which it
+ * was resolved (including instances of derived types). Use
+ * {@link Signals#getSignalHandle(Type, String)} to obtain a (cached) handle.
+ * <p>
+ * The preallocated GValues are used by one emission at a time. When a handle
+ * is used concurrently from multiple threads, or when a signal handler emits
+ * the same signal again, the nested emission falls back to temporary GValues.
+ */
+public final class SignalHandle {
+
+    static {
+        GObjects.javagi$ensureInitialized();
+    }
+
+    private static final MethodHandle g_signal_emitv =
+            Interop.downcallHandle(
+                    "g_signal_emitv",
+                    FunctionDescriptor.ofVoid(ValueLayout.ADDRESS,
+                            ValueLayout.JAVA_INT, ValueLayout.JAVA_INT,
+                            ValueLayout.ADDRESS),
+                    false);
+
+    private static final long VALUE_SIZE = Value.getMemoryLayout().byteSize();
+
+    private final Type instanceType;
+    private final String detailedSignal;
+    private final int signalId;
+    private final int detail;
+    private final Type[] paramTypes;
+    private final Type returnType;
+    private final boolean hasReturnValue;
+
+    // Preallocated instance, parameter and return values
+    private final MemorySegment values;
+    private final Value[] paramValues;
+    private final Value returnValue;
+    private final AtomicBoolean busy = new AtomicBoolean(false);
+
+    /*
+     * Create a handle for a signal that has already been looked up. The
+     * GValues are allocated once, and released when the handle is
+     * garbage-collected.
+     */
+    SignalHandle(Type instanceType, String detailedSignal, int signalId,
+                 int detail, Type[] paramTypes, Type returnType) {
+        this.instanceType = instanceType;
+        this.detailedSignal = detailedSignal;
+        this.signalId = signalId;
+        this.detail = detail;
+        this.paramTypes = paramTypes;
+        this.returnType = returnType;
+        this.hasReturnValue = !Types.NONE.equals(returnType);
+
+        Arena arena = Arena.ofAuto();
+        this.values = arena.allocate(VALUE_SIZE * (paramTypes.length + 1));
+        this.paramValues = initValues(values);
+        this.returnValue = hasReturnValue
+                ? new Value(arena).init(returnType)
+                : null;
+    }
+
+    /**
+     * Get the GType for which this signal handle was resolved.
+     *
+     * @return the GType of the instance that emits the signal
+     */
+    public Type instanceType() {
+        return instanceType;
+    }
+
+    /**
+     * Get the detailed signal name that was used to resolve this handle.
+     *
+     * @return a string of the form "signal-name::detail"
+     */
+    public String detailedSignal() {
+        return detailedSignal;
+    }
+
+    /**
+     * Get the id of the signal.
+     *
+     * @return the signal id
+     */
+    public int signalId() {
+        return signalId;
+    }
+
+    /**
+     * Get the detail quark of the signal, or 0 if the signal was resolved
+     * without a detail.
+     *
+     * @return the detail quark
+     */
+    public int detail() {
+        return detail;
+    }
+
+    /**
+     * Get the GTypes of the signal parameters (excluding the instance).
+     *
+     * @return a copy of the array of parameter types
+     */
+    public Type[] paramTypes() {
+        return paramTypes.clone();
+    }
+
+    /**
+     * Get the GType of the signal return value.
+     *
+     * @return the return type, or {@link Types#NONE} if the signal has no
+     *         return value
+     */
+    public Type returnType() {
+        return returnType;
+    }
+
+    /**
+     * Emits the signal from a GObject.
+     *
+     * @param  gobject the object that emits the signal
+     * @param  params  the parameters to emit for this signal
+     * @return the return value of the signal, or {@code null} if the signal
+     *         has no return value
+     * @throws IllegalArgumentException if the number or types of the
+     *                                  parameters do not match the signal
+     *                                  declaration
+     */
+    public Object emit(GObject gobject, Object... params) {
+        if (params.length != paramTypes.length)
+            throw new IllegalArgumentException("Signal \"%s\" expects %d parameters, but %d were provided"
+                    .formatted(detailedSignal, paramTypes.length, params.length));
+
+        if (busy.compareAndSet(false, true)) {
+            try {
+                return emit(values, paramValues, returnValue, gobject, params);
+            } finally {
+                busy.set(false);
+            }
+        }
+
+        // Nested or concurrent emission: use temporary GValues
+        try (var arena = Arena.ofConfined()) {
+            var tmpValues = arena.allocate(VALUE_SIZE * (paramTypes.length + 1));
+            var tmpParams = initValues(tmpValues);
+            var tmpReturnValue = hasReturnValue
+                    ? new Value(arena).init(returnType)
+                    : null;
+            try {
+                return emit(tmpValues, tmpParams, tmpReturnValue, gobject, params);
+            } finally {
+                for (Value value : tmpParams)
+                    value.unset();
+                if (tmpReturnValue != null)
+                    tmpReturnValue.unset();
+            }
+        }
+    }
+
+    /*
+     * Slice the GValues from the provided memory segment, and initialize them
+     * with the instance type and parameter types.
+     */
+    private Value[] initValues(MemorySegment segment) {
+        var result = new Value[paramTypes.length + 1];
+        result[0] = new Value(segment.asSlice(0, VALUE_SIZE)).init(instanceType);
+        for (int i = 0; i < paramTypes.length; i++)
+            result[i + 1] = new Value(segment.asSlice((i + 1) * VALUE_SIZE, VALUE_SIZE))
+                    .init(paramTypes[i]);
+        return result;
+    }
+
+    /*
+     * Write the instance and parameters into the GValues and emit the signal.
+     * Afterwards, the GValues are reset, to release copied strings and
+     * references.
+     */
+    private Object emit(MemorySegment segment, Value[] values,
+                        Value returnValue, GObject gobject, Object[] params) {
+        try {
+            values[0].setObject(gobject);
+            // A null parameter leaves the GValue empty (a NULL pointer)
+            for (int i = 0; i < params.length; i++)
+                if (params[i] != null
+                        && !ValueUtil.objectToValue(params[i], values[i + 1]))
+                    throw new IllegalArgumentException("Signal \"%s\" parameter %d: cannot convert %s to %s"
+                            .formatted(detailedSignal, i,
+                                    params[i].getClass().getSimpleName(),
+                                    GObjects.typeName(paramTypes[i])));
+
+            try {
+                g_signal_emitv.invokeExact(segment, signalId, detail,
+                        returnValue == null ? MemorySegment.NULL : returnValue.handle());
+            } catch (Throwable _err) {
+                throw new AssertionError("Unexpected exception occurred: ", _err);
+            }
+
+            return returnValue == null
+                    ? null
+                    : ValueUtil.valueToObject(returnValue);
+        } finally {
+            for (Value value : values)
+                value.reset();
+            if (returnValue != null)
+                returnValue.reset();
+        }
+    }
+}
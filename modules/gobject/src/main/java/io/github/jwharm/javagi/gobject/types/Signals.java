@@ -19,10 +19,9 @@
 
 package io.github.jwharm.javagi.gobject.types;
 
-import io.github.jwharm.javagi.base.Out;
+import io.github.jwharm.javagi.base.OutInt;
 import io.github.jwharm.javagi.base.Proxy;
 import io.github.jwharm.javagi.base.ProxyInstance;
-import io.github.jwharm.javagi.gobject.ValueUtil;
 import io.github.jwharm.javagi.gobject.annotations.Signal;
 import io.github.jwharm.javagi.interop.Interop;
 import org.gnome.glib.Quark;
@@ -38,7 +37,9 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 /**
@@ -78,6 +79,18 @@ public class Signals {
                         ValueLayout.ADDRESS, ValueLayout.ADDRESS),
                 true);
 
+    /*
+     * The G_SIGNAL_TYPE_STATIC_SCOPE flag can be set on the parameter types of
+     * a signal. It must be removed before the type is used.
+     */
+    private static final long G_SIGNAL_TYPE_STATIC_SCOPE = 1L;
+
+    /*
+     * Cache of resolved signal handles, per GType and detailed signal name.
+     */
+    private static final Map<Type, Map<String, SignalHandle>> signalHandles
+            = new ConcurrentHashMap<>();
+
     private record SignalDeclaration(String signalName,
                                      Set<SignalFlags> signalFlags,
                                      Type returnType,
@@ -251,66 +264,98 @@ public class Signals {
     public static Object emit(GObject gobject,
                               String detailedSignal,
                               Object... params) {
-        Type gtype = Types.getGType(gobject.getClass());
+        Type gtype = Types.FROM_INSTANCE(gobject);
+        return getSignalHandle(gtype, detailedSignal).emit(gobject, params);
+    }
+
+    /**
+     * Get a handle to a signal of the provided GType. The detailed signal
+     * name is parsed and the signal is queried once, and the resulting handle
+     * is cached. The handle can be used to emit the signal from all instances
+     * of the GType without repeating the lookup.
+     *
+     * @param  gtype          the GType of the instance that emits the signal
+     * @param  detailedSignal a string of the form "signal-name::detail"
+     * @return the signal handle
+     * @throws IllegalArgumentException if a signal with this name is not found
+     *                                  for the GType
+     */
+    public static SignalHandle getSignalHandle(Type gtype,
+                                               String detailedSignal) {
+        var handles = signalHandles.computeIfAbsent(gtype,
+                _ -> new ConcurrentHashMap<>());
+        var handle = handles.get(detailedSignal);
+        if (handle == null) {
+            handle = lookupSignal(gtype, detailedSignal);
+            var existing = handles.putIfAbsent(detailedSignal, handle);
+            if (existing != null)
+                handle = existing;
+        }
+        return handle;
+    }
+
+    /**
+     * Get a handle to a signal of the provided GObject class.
+     *
+     * @param  cls            a GObject class with a GType
+     * @param  detailedSignal a string of the form "signal-name::detail"
+     * @return the signal handle
+     * @throws IllegalArgumentException if a signal with this name is not found
+     *                                  for the class
+     * @see    #getSignalHandle(Type, String)
+     */
+    public static SignalHandle getSignalHandle(Class<? extends GObject> cls,
+                                               String detailedSignal) {
+        Type gtype = Types.getGType(cls);
+        if (gtype == null)
+            throw new IllegalArgumentException("Cannot find GType for class %s"
+                    .formatted(cls.getName()));
+        return getSignalHandle(gtype, detailedSignal);
+    }
 
-        // Parse the detailed signal name into a signal id and detail quark
-        Out<Integer> signalId = new Out<>();
+    /*
+     * Parse the detailed signal name into a signal id and detail quark, query
+     * the signal details, and create a new signal handle.
+     */
+    private static SignalHandle lookupSignal(Type gtype,
+                                             String detailedSignal) {
+        OutInt signalId = new OutInt();
         Quark detailQ = new Quark(0);
         boolean success = GObjects.signalParseName(
                 detailedSignal, gtype, signalId, detailQ, false);
 
         if (! success)
-            throw new IllegalArgumentException("Invalid signal \"%s\" for class %s"
-                    .formatted(detailedSignal, gobject));
+            throw new IllegalArgumentException("Invalid signal \"%s\" for type %s"
+                    .formatted(detailedSignal, GObjects.typeName(gtype)));
 
         try (var arena = Arena.ofConfined()) {
             // Query the parameter details of the signal
             SignalQuery query = new SignalQuery(arena);
             GObjects.signalQuery(signalId.get(), query);
 
-            // Create an array of Types for the parameters
-            int nParams = query.readNParams();
+            // Remove the G_SIGNAL_TYPE_STATIC_SCOPE flag from the parameter
+            // types, so they can be used to initialize a GValue
             Type[] paramTypes = query.readParamTypes();
-
-            // Allocate Values array for the instance parameter and other
-            // parameters
-            var values = new Value[nParams+1];
-
-            // Allocation return value
-            var returnValue = new Value(arena);
-            Type returnType = query.readReturnType();
-            if (! Types.NONE.equals(returnType))
-                returnValue.init(returnType);
-
-            // Set instance parameter
-            values[0] = new Value(arena).init(gtype);
-            values[0].setObject(gobject);
-
-            // Set other parameters
-            for (int i = 0; i < nParams; i++) {
-                values[i+1] = new Value(arena).init(paramTypes[i]);
-                ValueUtil.objectToValue(params[i], values[i+1]);
-            }
-
-            // Emit the signal
-            GObjects.signalEmitv(values, signalId.get(), detailQ, returnValue);
-
-            // Return the result (if any)
-            Object result = Types.NONE.equals(returnType)
-                    ? null
-                    : ValueUtil.valueToObject(returnValue);
-
-            // Cleanup the allocated values
-            for (Value value : values) {
-                if (value != null)
-                    value.unset();
-            }
-            returnValue.unset();
-
-            return result;
+            if (paramTypes == null)
+                paramTypes = new Type[0];
+            for (int i = 0; i < paramTypes.length; i++)
+                paramTypes[i] = withoutStaticScope(paramTypes[i]);
+
+            return new SignalHandle(
+                    gtype,
+                    detailedSignal,
+                    signalId.get(),
+                    detailQ.getValue(),
+                    paramTypes,
+                    withoutStaticScope(query.readReturnType()));
         }
     }
 
+    // Clear the G_SIGNAL_TYPE_STATIC_SCOPE bit of a signal parameter type
+    private static Type withoutStaticScope(Type type) {
+        return new Type(type.getValue() & ~G_SIGNAL_TYPE_STATIC_SCOPE);
+    }
+
     /**
      * Get the single abstract method (SAM) implementation of a class that
      * implements a functional interface. A functional interface is an
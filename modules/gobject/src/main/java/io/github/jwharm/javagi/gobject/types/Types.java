@@ -31,6 +31,7 @@ import org.gnome.gobject.*;
 import java.lang.foreign.Arena;
 import java.lang.foreign.MemorySegment;
 import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.ValueLayout;
 import java.lang.reflect.*;
 import java.util.EnumSet;
 import java.util.Set;
@@ -456,8 +457,66 @@ public class Types {
      */
     public static final long RESERVED_USER_FIRST	= 49L;
 
+    /*
+     * Caches for the results of the reflection-based lookups in this class.
+     * A null result of getGType() and getLayout() is not cached, because it
+     * can be caused by a static field that has not been initialized yet.
+     */
+
+    private static final ClassValue<Type> gtypes = new ClassValue<>() {
+        @Override
+        protected Type computeValue(Class<?> cls) {
+            return findGType(cls);
+        }
+    };
+
+    private static final ClassValue<MemoryLayout> layouts = new ClassValue<>() {
+        @Override
+        protected MemoryLayout computeValue(Class<?> cls) {
+            return findLayout(cls);
+        }
+    };
+
+    private static final ClassValue<Class<?>> typeClasses = new ClassValue<>() {
+        @Override
+        protected Class<?> computeValue(Class<?> cls) {
+            return findTypeClass(cls);
+        }
+    };
+
+    private static final ClassValue<Class<?>> typeInterfaces = new ClassValue<>() {
+        @Override
+        protected Class<?> computeValue(Class<?> iface) {
+            return findTypeInterface(iface);
+        }
+    };
+
+    private static final ClassValue<Function<MemorySegment, ?>> addressConstructors
+            = new ClassValue<>() {
+        @Override
+        protected Function<MemorySegment, ?> computeValue(Class<?> cls) {
+            return findAddressConstructor(cls);
+        }
+    };
+
     // Type Checking Macros
 
+    /**
+     * Get the type identifier from a given {@code instance}.
+     * <p>
+     * The GType is read directly from the first field of the class structure
+     * of the instance, so unlike {@code instance.readGClass().readGType()},
+     * no TypeClass proxy object is created.
+     *
+     * @param  instance Location of a valid {@link TypeInstance} structure
+     * @return the {@link Type} of the instance
+     */
+    public static Type FROM_INSTANCE(TypeInstance instance) {
+        MemorySegment gclass = Interop.dereference(instance.handle());
+        return new Type(gclass.reinterpret(ValueLayout.JAVA_LONG.byteSize())
+                .get(ValueLayout.JAVA_LONG, 0));
+    }
+
     /**
      * Checks if {@code type} is a fundamental type.
      *
@@ -706,17 +765,21 @@ public class Types {
     @SuppressWarnings("unchecked")
     public static <T extends TypeInstance, TC extends TypeClass>
     Class<TC> getTypeClass(Class<T> cls) {
+        return (Class<TC>) typeClasses.get(cls);
+    }
 
+    // Find the inner TypeClass class, or the inner TypeClass of the superclass
+    private static Class<?> findTypeClass(Class<?> cls) {
         // Get the type-struct. This is an inner class that extends ObjectClass.
         for (Class<?> gclass : cls.getDeclaredClasses()) {
             if (TypeClass.class.isAssignableFrom(gclass)) {
-                return (Class<TC>) gclass;
+                return gclass;
             }
         }
         // If the type-struct is unavailable, get it from the parent class.
         for (Class<?> gclass : cls.getSuperclass().getDeclaredClasses()) {
             if (TypeClass.class.isAssignableFrom(gclass)) {
-                return (Class<TC>) gclass;
+                return gclass;
             }
         }
         return null;
@@ -731,10 +794,15 @@ public class Types {
      */
     @SuppressWarnings("unchecked")
     public static <TI extends TypeInterface> Class<TI> getTypeInterface(Class<?> iface) {
+        return (Class<TI>) typeInterfaces.get(iface);
+    }
+
+    // Find the inner TypeInterface class
+    private static Class<?> findTypeInterface(Class<?> iface) {
         // Get the type-struct. This is an inner class that extends TypeInterface.
         for (Class<?> giface : iface.getClasses()) {
             if (TypeInterface.class.isAssignableFrom(giface)) {
-                return (Class<TI>) giface;
+                return giface;
             }
         }
         return null;
@@ -777,12 +845,20 @@ public class Types {
      * Return the {@link Type} that is returned by a static method with
      * {@code @GType} annotation, or if that annotation is not found, by
      * searching for a method with return type {@code Type}, or else, return
-     * null.
+     * null. The GType is resolved once per class, and then cached.
      *
      * @param  cls the class for which to return the declared GType
      * @return the declared GType
      */
     public static Type getGType(Class<?> cls) {
+        Type gtype = gtypes.get(cls);
+        if (gtype == null)
+            gtypes.remove(cls);
+        return gtype;
+    }
+
+    // Find and invoke the static method that returns the GType of this class
+    private static Type findGType(Class<?> cls) {
         Method gtypeMethod = getGTypeMethod(cls);
 
         if (gtypeMethod == null) {
@@ -830,12 +906,21 @@ public class Types {
      * Return the MemoryLayout that is returned by a method with
      * {@code @MemoryLayout} annotation, or if that annotation is not found, by
      * invoking {@code cls.getMemoryLayout()} if such method exists, or else,
-     * return null.
+     * return null. The MemoryLayout is resolved once per class, and then
+     * cached.
      *
      * @param  cls the class for which to return the declared MemoryLayout
      * @return the declared MemoryLayout
      */
     public static MemoryLayout getLayout(Class<?> cls) {
+        MemoryLayout layout = layouts.get(cls);
+        if (layout == null)
+            layouts.remove(cls);
+        return layout;
+    }
+
+    // Find and invoke the method that returns the MemoryLayout of this class
+    private static MemoryLayout findLayout(Class<?> cls) {
         // Find a method that is annotated with @MemoryLayout and execute it
         for (Method m : cls.getDeclaredMethods()) {
             if (m.isAnnotationPresent(Layout.class)) {
@@ -889,8 +974,15 @@ public class Types {
      * @return the memory address constructor for this class, or null if not
      *         found
      */
+    @SuppressWarnings("unchecked")
     public static <T extends Proxy>
     Function<MemorySegment, T> getAddressConstructor(Class<T> cls) {
+        return (Function<MemorySegment, T>) addressConstructors.get(cls);
+    }
+
+    // Create a function that runs the memory address constructor
+    private static <T> Function<MemorySegment, T> findAddressConstructor(
+            Class<T> cls) {
 
         Constructor<T> ctor;
         try {
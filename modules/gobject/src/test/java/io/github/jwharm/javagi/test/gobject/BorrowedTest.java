@@ -0,0 +1,47 @@
+package io.github.jwharm.javagi.test.gobject;
+
+import org.gnome.gobject.GObjects;
+import org.gnome.gobject.ParamFlags;
+import org.gnome.gobject.Value;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.ValueLayout;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test the borrowed variants of methods that return a struct without
+ * ownership transfer
+ */
+public class BorrowedTest {
+
+    @Test
+    void borrowedValue() {
+        var pspec = GObjects.paramSpecInt("number", "Number", "A number",
+                0, 10, 5, ParamFlags.READWRITE);
+
+        Value borrowed;
+        try (var arena = Arena.ofConfined()) {
+            borrowed = pspec.getDefaultValueBorrowed(arena);
+            assertEquals(5, borrowed.getInt());
+
+            // The borrowed value is a view on the native default value
+            assertEquals(borrowed.handle().address(),
+                    pspec.getDefaultValueBorrowed(arena).handle().address());
+
+            // The normal method returns a copy
+            Value copy = pspec.getDefaultValue();
+            assertNotEquals(borrowed.handle().address(), copy.handle().address());
+            assertEquals(5, copy.getInt());
+
+            // The view is bounded by the arena
+            assertEquals(arena.scope(), borrowed.handle().scope());
+        }
+
+        // After the arena is closed, the view can no longer be accessed
+        var handle = borrowed.handle();
+        assertThrows(IllegalStateException.class,
+                () -> handle.get(ValueLayout.JAVA_LONG, 0));
+    }
+}
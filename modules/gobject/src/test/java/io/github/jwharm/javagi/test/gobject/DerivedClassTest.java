@@ -69,6 +69,7 @@ public class DerivedClassTest {
     public void instanceGtypeIsCorrect() {
         TestObject object = GObject.newInstance(TestObject.gtype);
         assertEquals(object.readGClass().readGType(), TestObject.gtype);
+        assertEquals(Types.FROM_INSTANCE(object), TestObject.gtype);
     }
 
     /**
@@ -23,6 +23,8 @@ import io.github.jwharm.javagi.gobject.annotations.GType;
 import io.github.jwharm.javagi.gobject.annotations.Property;
 import io.github.jwharm.javagi.gobject.annotations.RegisteredType;
 import io.github.jwharm.javagi.gobject.annotations.Signal;
+import io.github.jwharm.javagi.gobject.types.SignalHandle;
+import io.github.jwharm.javagi.gobject.types.Signals;
 import io.github.jwharm.javagi.gobject.types.Types;
 import org.gnome.glib.Type;
 import org.gnome.gobject.GObject;
@@ -30,10 +32,10 @@ import org.junit.jupiter.api.Test;
 
 import java.lang.foreign.MemorySegment;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntConsumer;
 
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Test user-defined signals:
@@ -64,6 +66,27 @@ public class NewSignalTest {
         assertTrue(success.get());
     }
 
+    @Test
+    void emitWithSignalHandle() {
+        Counter counter = GObject.newInstance(Counter.getType(), "limit", 10);
+        AtomicInteger received = new AtomicInteger(0);
+        counter.connect("limit-reached", (Counter.LimitReached) received::addAndGet);
+
+        // Resolve the signal once, and emit it repeatedly
+        SignalHandle handle = Signals.getSignalHandle(Counter.class, "limit-reached");
+        assertSame(handle, Signals.getSignalHandle(Counter.getType(), "limit-reached"));
+        assertEquals(1, handle.paramTypes().length);
+        for (int i = 0; i < 100; i++)
+            handle.emit(counter, 1);
+        assertEquals(100, received.get());
+
+        // A parameter of the wrong type is rejected, and not emitted
+        assertThrows(IllegalArgumentException.class, () -> handle.emit(counter, "one"));
+        assertEquals(100, received.get());
+        handle.emit(counter, 1);
+        assertEquals(101, received.get());
+    }
+
     /**
      * Simple GObject-derived class that can count up to a predefined maximum number.
      * When the maximum number is reached, the "limit-reached" signal is emitted.
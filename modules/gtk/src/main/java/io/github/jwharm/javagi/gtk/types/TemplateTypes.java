@@ -209,12 +209,14 @@ public class TemplateTypes {
                  * directly.
                  */
                 try {
-                    var parent = GObject.ObjectClass.getMemoryLayout();
-                    var func = Overrides.lookupVirtualMethodParent(
-                                    object.handle(), parent, "dispose");
-                    var desc = FunctionDescriptor.ofVoid(ValueLayout.ADDRESS);
-                    var downcall = Interop.downcallHandle(func, desc);
-                    downcall.invokeExact(object.handle());
+                    var downcall = Overrides.lookupVirtualMethodParentHandle(
+                            object.handle(),
+                            GObject.ObjectClass.class,
+                            GObject.ObjectClass::getMemoryLayout,
+                            "dispose",
+                            () -> FunctionDescriptor.ofVoid(ValueLayout.ADDRESS));
+                    if (downcall != null)
+                        downcall.invokeExact(object.handle());
                 } catch (Throwable _err) {
                     throw new AssertionError("Unexpected exception occurred: ", _err);
                 }
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.ListIterator;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -59,6 +60,23 @@ public class ListTest {
         iter.next();
         assertEquals(newElem, iter.previous());
 
+        // Random access, bulk conversion and snapshot
+        glist = group.listWindows();
+        Object[] array = glist.toArray();
+        assertEquals(glist.size(), array.length);
+        for (int i = 0; i < array.length; i++)
+            assertEquals(array[i], glist.get(i));
+        assertEquals(java.util.List.of(array), glist.snapshot());
+        assertEquals(array.length, glist.stream().parallel().count());
+        assertEquals(array[1], glist.listIterator(1).next());
+
+        // A positioned iterator has not returned an element yet
+        ListIterator<Window> positioned = glist.listIterator(2);
+        assertThrows(IllegalStateException.class, positioned::remove);
+        assertThrows(IllegalStateException.class, () -> positioned.set(newElem));
+        assertEquals(array.length, glist.size());
+        assertEquals(array[2], positioned.next());
+
         // Empty list
         List<Window> emptyList = new WindowGroup().listWindows();
         assertEquals(0, emptyList.size());
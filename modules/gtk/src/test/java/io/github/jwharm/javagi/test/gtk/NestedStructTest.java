@@ -7,7 +7,7 @@ import org.junit.jupiter.api.Test;
 
 import java.lang.foreign.Arena;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Test creating, reading and writing nested structs
@@ -40,4 +40,20 @@ public class NestedStructTest {
             assertEquals(newH, rect.readSize().readHeight());
         }
     }
+
+    @Test
+    public void testHeapAllocatedStruct() {
+        var point = Point.ofHeap();
+        assertFalse(point.handle().isNative());
+
+        // The native function writes into a copy, that is copied back
+        point.init(1.5f, 2.5f);
+        assertEquals(1.5f, point.readX());
+        assertEquals(2.5f, point.readY());
+
+        // Heap-allocated and native structs can be mixed
+        var other = Point.alloc().init(1.5f, 2.5f);
+        assertTrue(point.equal(other));
+        assertTrue(other.equal(point));
+    }
 }